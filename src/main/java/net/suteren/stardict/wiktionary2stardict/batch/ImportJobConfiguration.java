@@ -0,0 +1,117 @@
+package net.suteren.stardict.wiktionary2stardict.batch;
+
+import java.nio.file.Path;
+
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.WordDefinitionEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.repository.TranslationPairRepository;
+import net.suteren.stardict.wiktionary2stardict.jpa.repository.WordDefinitionRepository;
+import net.suteren.stardict.wiktionary2stardict.service.GlossService;
+import net.suteren.stardict.wiktionary2stardict.service.ImportProperties;
+import net.suteren.stardict.wiktionary2stardict.service.ImportReport;
+import net.suteren.stardict.wiktionary2stardict.service.IncrementalDefinitionWriter;
+import net.suteren.stardict.wiktionary2stardict.service.WiktionaryImportService;
+import net.suteren.stardict.wiktionary2stardict.service.WordIndexService;
+import net.suteren.stardict.wiktionary2stardict.sink.DefinitionSinkFactory;
+import net.suteren.stardict.wiktionary2stardict.sink.LanguagePartitions;
+
+/**
+ * Spring Batch import of JSONL files: the manager step partitions the input path into one partition per file,
+ * the partitions run in parallel as chunk-oriented steps reading lines, converting them to definitions
+ * and writing them incrementally in batches. Malformed lines are skipped up to the configured limit.
+ */
+@Configuration
+public class ImportJobConfiguration {
+
+	public static final String JOB_NAME = "jsonlImportJob";
+	public static final String PATH_PARAMETER = "path";
+	/** Start of the job, kept by a restart; it is the import run stamped on the written entries. */
+	public static final String RUN_PARAMETER = "run";
+	static final String MANAGER_STEP_NAME = "importFiles";
+	static final String WORKER_STEP_NAME = "importFile";
+
+	@Bean
+	public Job jsonlImportJob(JobRepository jobRepository, Step importFilesStep) {
+		return new JobBuilder(JOB_NAME, jobRepository)
+			.start(importFilesStep)
+			.build();
+	}
+
+	@Bean
+	public Step importFilesStep(JobRepository jobRepository, JsonlFilePartitioner jsonlFilePartitioner, Step importFileStep,
+		ImportProperties importProperties) {
+		SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor("jsonl-import-");
+		taskExecutor.setConcurrencyLimit(importProperties.getWorkers());
+		return new StepBuilder(MANAGER_STEP_NAME, jobRepository)
+			.partitioner(WORKER_STEP_NAME, jsonlFilePartitioner)
+			.step(importFileStep)
+			.gridSize(importProperties.getWorkers())
+			.taskExecutor(taskExecutor)
+			.build();
+	}
+
+	@Bean
+	public Step importFileStep(JobRepository jobRepository, PlatformTransactionManager transactionManager, JsonlItemReader jsonlItemReader,
+		ItemProcessor<String, WordDefinitionEntity> wordDefinitionProcessor, ItemWriter<WordDefinitionEntity> wordDefinitionWriter,
+		ImportProperties importProperties) {
+		return new StepBuilder(WORKER_STEP_NAME, jobRepository)
+			.<String, WordDefinitionEntity>chunk(importProperties.getChunkSize(), transactionManager)
+			.reader(jsonlItemReader)
+			.processor(wordDefinitionProcessor)
+			.writer(wordDefinitionWriter)
+			.faultTolerant()
+			.skip(JsonProcessingException.class)
+			.skipLimit(importProperties.getSkipLimit())
+			.listener(new ImportStepMetricsListener())
+			.build();
+	}
+
+	@Bean @StepScope
+	public JsonlFilePartitioner jsonlFilePartitioner(@Value("#{jobParameters['" + PATH_PARAMETER + "']}") String path) {
+		return new JsonlFilePartitioner(Path.of(path));
+	}
+
+	@Bean @StepScope
+	public JsonlItemReader jsonlItemReader(@Value("#{stepExecutionContext['" + JsonlFilePartitioner.FILE_KEY + "']}") String file) {
+		return new JsonlItemReader(Path.of(file));
+	}
+
+	@Bean @StepScope
+	public ItemProcessor<String, WordDefinitionEntity> wordDefinitionProcessor(WiktionaryImportService importService,
+		@Value("#{stepExecutionContext['" + JsonlFilePartitioner.SOURCE_KEY + "']}") String source) {
+		return line -> importService.toEntity(source, line);
+	}
+
+	/**
+	 * Writes the entries of a file partition incrementally, see {@link IncrementalItemWriter}. Partitions run concurrently,
+	 * so translation pairs are not added chunk by chunk but rebuilt once the job completes.
+	 */
+	@Bean @StepScope
+	public IncrementalItemWriter wordDefinitionWriter(WordDefinitionRepository repository, TranslationPairRepository pairRepository,
+		GlossService glossService, WordIndexService wordIndexService, DefinitionSinkFactory sinkFactory, LanguagePartitions languagePartitions,
+		PlatformTransactionManager transactionManager,
+		@Value("#{stepExecutionContext['" + JsonlFilePartitioner.SOURCE_KEY + "']}") String source,
+		@Value("#{jobParameters['" + RUN_PARAMETER + "']}") Long importRun) {
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+		ImportReport report = new ImportReport();
+		IncrementalDefinitionWriter writer = transactionTemplate.execute(status -> new IncrementalDefinitionWriter(repository, pairRepository,
+			glossService, wordIndexService, sinkFactory.createJpa(), source, importRun, false, report));
+		return new IncrementalItemWriter(writer, languagePartitions, transactionTemplate, source, report);
+	}
+}
@@ -0,0 +1,78 @@
+package net.suteren.stardict.wiktionary2stardict.batch;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Optional;
+
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.stereotype.Service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.suteren.stardict.wiktionary2stardict.jpa.repository.LanguagePairStatsRepository;
+import net.suteren.stardict.wiktionary2stardict.jpa.repository.TranslationPairRepository;
+
+@Slf4j
+@RequiredArgsConstructor
+@Service public class ImportJobService {
+
+	private final JobLauncher jobLauncher;
+	private final JobRepository jobRepository;
+	private final Job jsonlImportJob;
+	private final TranslationPairRepository pairRepository;
+	private final LanguagePairStatsRepository statsRepository;
+
+	/**
+	 * Imports a JSONL file or a directory of JSONL files with the batch job. When the last run of the job
+	 * for the same path failed or was stopped, it is restarted from its last commit instead.
+	 * The job updates changed entries and removes vanished ones like the pipeline import, but its files are written
+	 * concurrently, so the translation pairs are rebuilt once it completes.
+	 *
+	 * @return number of written entries
+	 */
+	public long importPath(String path) throws Exception {
+		Path absolute = Path.of(path).toAbsolutePath().normalize();
+		if (!Files.exists(absolute)) {
+			throw new IOException("Path not found: " + path);
+		}
+		JobParameters parameters = findRestartable(absolute.toString())
+			.map(p -> {
+				log.info("Restarting unfinished import of {}", absolute);
+				return p;
+			})
+			.orElseGet(() -> new JobParametersBuilder()
+				.addString(ImportJobConfiguration.PATH_PARAMETER, absolute.toString())
+				.addLong(ImportJobConfiguration.RUN_PARAMETER, System.currentTimeMillis())
+				.toJobParameters());
+		JobExecution execution = jobLauncher.run(jsonlImportJob, parameters);
+		if (execution.getStatus() != BatchStatus.COMPLETED) {
+			throw new IllegalStateException("Import of %s finished with status %s".formatted(absolute, execution.getStatus()),
+				execution.getAllFailureExceptions().stream().findFirst().orElse(null));
+		}
+		log.info("Built {} translation pairs", pairRepository.rebuild());
+		statsRepository.refresh();
+		return execution.getStepExecutions().stream()
+			.filter(s -> s.getStepName().startsWith(ImportJobConfiguration.WORKER_STEP_NAME + ":"))
+			.mapToLong(StepExecution::getWriteCount)
+			.sum();
+	}
+
+	private Optional<JobParameters> findRestartable(String path) {
+		return jobRepository.findJobInstancesByName(ImportJobConfiguration.JOB_NAME, 0, 1).stream()
+			.findFirst()
+			.flatMap(instance -> jobRepository.findJobExecutions(instance).stream()
+				.max(Comparator.comparing(JobExecution::getId)))
+			.filter(e -> e.getStatus() == BatchStatus.FAILED || e.getStatus() == BatchStatus.STOPPED)
+			.map(JobExecution::getJobParameters)
+			.filter(p -> path.equals(p.getString(ImportJobConfiguration.PATH_PARAMETER)));
+	}
+}
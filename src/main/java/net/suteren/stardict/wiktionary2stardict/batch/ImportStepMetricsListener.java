@@ -0,0 +1,39 @@
+package net.suteren.stardict.wiktionary2stardict.batch;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Logs read, write, filter and skip counts of a finished step together with its throughput.
+ */
+@Slf4j
+public class ImportStepMetricsListener implements StepExecutionListener {
+
+	@Override public ExitStatus afterStep(StepExecution stepExecution) {
+		Duration duration = Duration.between(
+			Optional.ofNullable(stepExecution.getStartTime()).orElseGet(LocalDateTime::now),
+			LocalDateTime.now());
+		double seconds = Math.max(duration.toMillis(), 1) / 1000.0;
+		log.info("Step {} {}: read {}, written {}, filtered {}, skipped {} (read {}, process {}, write {}), commits {}, {} s, {} entries/s",
+			stepExecution.getStepName(),
+			stepExecution.getStatus(),
+			stepExecution.getReadCount(),
+			stepExecution.getWriteCount(),
+			stepExecution.getFilterCount(),
+			stepExecution.getSkipCount(),
+			stepExecution.getReadSkipCount(),
+			stepExecution.getProcessSkipCount(),
+			stepExecution.getWriteSkipCount(),
+			stepExecution.getCommitCount(),
+			"%.1f".formatted(seconds),
+			"%.0f".formatted(stepExecution.getWriteCount() / seconds));
+		return stepExecution.getExitStatus();
+	}
+}
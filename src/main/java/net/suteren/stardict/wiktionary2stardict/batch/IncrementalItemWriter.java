@@ -0,0 +1,57 @@
+package net.suteren.stardict.wiktionary2stardict.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.WordDefinitionEntity;
+import net.suteren.stardict.wiktionary2stardict.service.ImportReport;
+import net.suteren.stardict.wiktionary2stardict.service.IncrementalDefinitionWriter;
+import net.suteren.stardict.wiktionary2stardict.sink.LanguagePartitions;
+
+/**
+ * Writes the chunks of a file partition through an {@link IncrementalDefinitionWriter} stamping the entries with
+ * the import run of the job, so a re-import updates changed entries instead of duplicating them. Once the partition
+ * completes, the entries of its source the run did not confirm are removed. A restarted job keeps its import run,
+ * so the entries committed before the failure count as confirmed.
+ */
+@Slf4j
+public class IncrementalItemWriter implements ItemWriter<WordDefinitionEntity>, StepExecutionListener {
+
+	private final IncrementalDefinitionWriter writer;
+	private final LanguagePartitions languagePartitions;
+	private final TransactionTemplate transactionTemplate;
+	private final String source;
+	private final ImportReport report;
+
+	IncrementalItemWriter(IncrementalDefinitionWriter writer, LanguagePartitions languagePartitions, TransactionTemplate transactionTemplate,
+		String source, ImportReport report) {
+		this.writer = writer;
+		this.languagePartitions = languagePartitions;
+		this.transactionTemplate = transactionTemplate;
+		this.source = source;
+		this.report = report;
+	}
+
+	@Override public void write(Chunk<? extends WordDefinitionEntity> chunk) {
+		List<WordDefinitionEntity> definitions = new ArrayList<>(chunk.getItems());
+		languagePartitions.ensurePartitions(definitions);
+		writer.write(definitions);
+	}
+
+	@Override public ExitStatus afterStep(StepExecution stepExecution) {
+		if (stepExecution.getStatus() == BatchStatus.COMPLETED) {
+			transactionTemplate.executeWithoutResult(status -> writer.removeVanished());
+			log.info("Imported {}: {}", source, report);
+		}
+		return stepExecution.getExitStatus();
+	}
+}
@@ -0,0 +1,52 @@
+package net.suteren.stardict.wiktionary2stardict.batch;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+
+import net.suteren.stardict.wiktionary2stardict.service.JsonlFiles;
+
+/**
+ * Creates one partition per JSONL file found under the given path (a file or a directory searched recursively).
+ */
+public class JsonlFilePartitioner implements Partitioner {
+
+	static final String FILE_KEY = "jsonl.file";
+	static final String SOURCE_KEY = "jsonl.source";
+
+	private final Path path;
+
+	public JsonlFilePartitioner(Path path) {
+		this.path = path;
+	}
+
+	@Override public Map<String, ExecutionContext> partition(int gridSize) {
+		List<Path> files;
+		try (Stream<Path> walk = Files.walk(path)) {
+			files = walk
+				.filter(Files::isRegularFile)
+				.filter(f -> JsonlFiles.isJsonl(f.getFileName().toString()))
+				.sorted()
+				.toList();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to list " + path, e);
+		}
+		Map<String, ExecutionContext> partitions = new LinkedHashMap<>();
+		for (int i = 0; i < files.size(); i++) {
+			Path file = files.get(i);
+			ExecutionContext context = new ExecutionContext();
+			context.putString(FILE_KEY, file.toAbsolutePath().toString());
+			context.putString(SOURCE_KEY, JsonlFiles.getSourceLabel(file.getFileName().toString()));
+			partitions.put("file" + i, context);
+		}
+		return partitions;
+	}
+}
@@ -0,0 +1,75 @@
+package net.suteren.stardict.wiktionary2stardict.batch;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+
+import lombok.extern.slf4j.Slf4j;
+import net.suteren.stardict.wiktionary2stardict.service.JsonlFiles;
+import net.suteren.stardict.wiktionary2stardict.service.JsonlLine;
+import net.suteren.stardict.wiktionary2stardict.service.JsonlLineReader;
+
+/**
+ * Reads a plain or compressed JSONL file line by line. The byte offset of the last line read is stored in the step execution context
+ * on every commit, so a restarted step continues right after the last committed chunk.
+ */
+@Slf4j
+public class JsonlItemReader implements ItemStreamReader<String> {
+
+	static final String OFFSET_KEY = "jsonl.offset";
+
+	private final Path file;
+	private JsonlLineReader reader;
+	private long offset;
+
+	public JsonlItemReader(Path file) {
+		this.file = file;
+	}
+
+	@Override public void open(ExecutionContext executionContext) throws ItemStreamException {
+		offset = executionContext.getLong(OFFSET_KEY, 0L);
+		try {
+			reader = new JsonlLineReader(JsonlFiles.open(file, offset), offset);
+		} catch (IOException e) {
+			throw new ItemStreamException("Failed to open " + file, e);
+		}
+		if (offset > 0) {
+			log.info("Restarting import of {} at byte {}", file, offset);
+		}
+	}
+
+	@Override public String read() {
+		try {
+			while (reader.hasNext()) {
+				JsonlLine line = reader.next();
+				offset = line.endOffset();
+				if (!line.text().isBlank()) {
+					return line.text();
+				}
+			}
+			return null;
+		} catch (UncheckedIOException e) {
+			throw new ItemStreamException("Failed to read " + file, e.getCause());
+		}
+	}
+
+	@Override public void update(ExecutionContext executionContext) throws ItemStreamException {
+		executionContext.putLong(OFFSET_KEY, offset);
+	}
+
+	@Override public void close() throws ItemStreamException {
+		if (reader != null) {
+			try {
+				reader.close();
+			} catch (IOException e) {
+				throw new ItemStreamException("Failed to close " + file, e);
+			} finally {
+				reader = null;
+			}
+		}
+	}
+}
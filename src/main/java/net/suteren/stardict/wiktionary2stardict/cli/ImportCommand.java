@@ -8,7 +8,11 @@ import org.springframework.stereotype.Component;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import net.suteren.stardict.wiktionary2stardict.batch.ImportJobService;
+import net.suteren.stardict.wiktionary2stardict.service.ImportReport;
 import net.suteren.stardict.wiktionary2stardict.service.WiktionaryImportService;
+import net.suteren.stardict.wiktionary2stardict.store.DefinitionStore;
+import net.suteren.stardict.wiktionary2stardict.store.EmbeddedDefinitionStore;
 import picocli.CommandLine;
 
 @Slf4j
@@ -17,37 +21,58 @@ import picocli.CommandLine;
 @Component public class ImportCommand implements Runnable {
 
 	private final WiktionaryImportService importService;
+	private final ImportJobService importJobService;
+	private final DefinitionStore store;
 
-	@CommandLine.Option(names = { "-i", "--import-jsonl" }, split = ",", description = "Path to Wiktionary JSONL file or directory")
+	@CommandLine.Option(names = { "-i", "--import-jsonl" }, split = ",", description = "Path to Wiktionary JSONL file (plain, .gz, .bz2, .zst or .xz) or directory")
 	Set<String> importPath;
 
 	@CommandLine.Option(names = { "-d",
 		"--download-langs" }, split = ",", description = "Comma-separated Kaikki language names to download and import (e.g., 'Czech,Italian,Serbo-Croatian')")
 	String[] downloadLangs;
 
-	@CommandLine.Option(names = { "-c", "--cleanup" }, arity = "*", split = ",", description = "Comma-separated sources to delete")
+	@CommandLine.Option(names = { "-c", "--cleanup" }, arity = "*", split = ",",
+		description = "Comma-separated sources to delete before the import, all entries when no source is given; "
+			+ "not needed for a re-import, which updates changed entries and removes vanished ones")
 	Set<String> cleanupSources;
 
+	@CommandLine.Option(names = { "-m", "--mode" }, defaultValue = "BATCH",
+		description = "Import engine for JSONL paths: ${COMPLETION-CANDIDATES} (default: ${DEFAULT-VALUE}); "
+			+ "an embedded storage is always imported by the pipeline")
+	Mode mode;
+
+	enum Mode {
+		/** Restartable Spring Batch job with one partition per file, importing incrementally. */
+		BATCH,
+		/** In-process parallel pipeline with byte-offset checkpoints, importing incrementally. */
+		PIPELINE
+	}
+
 	@Override
 	public void run() {
 		try {
-			int imported = 0;
+			ImportReport report = new ImportReport();
 
-			if (downloadLangs != null) {
-				importService.cleanupEntries(cleanupSources);
+			if (cleanupSources != null) {
+				long removed = importService.cleanupEntries(cleanupSources);
+				log.info("Deleted entries: {}", removed);
 			}
 
 			if (downloadLangs != null && downloadLangs.length > 0) {
 				List<String> langs = Arrays.stream(downloadLangs).toList();
-				int dlImported = importService.downloadAndImportLanguages(langs);
-				imported += dlImported;
-				log.info("Downloaded and imported entries: {} (total imported: {})", dlImported, imported);
+				ImportReport dlReport = importService.downloadAndImportLanguages(langs);
+				report.add(dlReport);
+				log.info("Downloaded and imported: {}", dlReport);
 			}
 
 			if (importPath != null && !importPath.isEmpty()) {
 				for (String path : importPath) {
-					imported += importService.importJsonlPath(path);
-					log.info("Imported entries: {}", imported);
+					if (mode == Mode.BATCH && !(store instanceof EmbeddedDefinitionStore)) {
+						report.addInserted(importJobService.importPath(path));
+					} else {
+						report.add(importService.importJsonlPath(path));
+					}
+					log.info("Imported: {}", report);
 				}
 			}
 		} catch (Exception ex) {
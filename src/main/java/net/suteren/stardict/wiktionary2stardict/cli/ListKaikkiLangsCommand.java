@@ -4,7 +4,7 @@ import org.springframework.stereotype.Component;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import net.suteren.stardict.wiktionary2stardict.service.WiktionaryImportService;
+import net.suteren.stardict.wiktionary2stardict.service.KaikkiLanguageCatalog;
 import picocli.CommandLine;
 
 @Slf4j
@@ -12,12 +12,12 @@ import picocli.CommandLine;
 @CommandLine.Command(name = "listl", description = "List available languages from Kaikki and exit", mixinStandardHelpOptions = true)
 @Component public class ListKaikkiLangsCommand implements Runnable {
 
-	private final WiktionaryImportService importService;
+	private final KaikkiLanguageCatalog languageCatalog;
 
 	@Override public void run() {
 		try {
-			importService.listKaikkiLanguages()
-				.forEach(l -> log.info("%s (%s)".formatted(l.getLeft(), l.getRight())));
+			languageCatalog.languages()
+				.forEach(l -> log.info("%s (%s, %s senses)".formatted(l.name(), l.path(), l.senses() != null ? l.senses() : "?")));
 		} catch (Exception ex) {
 			log.error("Error listing Kaikki languages", ex);
 			System.exit(1);
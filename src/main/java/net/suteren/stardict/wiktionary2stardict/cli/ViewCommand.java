@@ -7,7 +7,7 @@ import org.springframework.stereotype.Component;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
-import net.suteren.stardict.wiktionary2stardict.jpa.entity.TranslationEntity;
+import net.suteren.stardict.wiktionary2stardict.service.TranslationView;
 import net.suteren.stardict.wiktionary2stardict.service.ViewService;
 import picocli.CommandLine;
 
@@ -28,7 +28,7 @@ import picocli.CommandLine;
 
 	@SneakyThrows
 	@Override public void run() {
-		List<TranslationEntity> translation = viewService.view(langCodeFrom, langCodeTo, word);
+		List<TranslationView> translation = viewService.view(langCodeFrom, langCodeTo, word);
 		translation.forEach(System.out::println);
 	}
 }
@@ -0,0 +1,201 @@
+package net.suteren.stardict.wiktionary2stardict.converter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.suteren.stardict.wiktionary2stardict.model.Derived;
+import net.suteren.stardict.wiktionary2stardict.model.Form;
+import net.suteren.stardict.wiktionary2stardict.model.Related;
+import net.suteren.stardict.wiktionary2stardict.model.Sense;
+import net.suteren.stardict.wiktionary2stardict.model.Sound;
+import net.suteren.stardict.wiktionary2stardict.model.Translation;
+import net.suteren.stardict.wiktionary2stardict.model.WiktionaryEntry;
+
+/**
+ * Compact binary form of the parts of a {@link WiktionaryEntry} used by {@link WiktionaryEntryRenderers} and the export:
+ * word, part of speech, language, sense texts and glosses, IPA, forms with their tags, etymology, derived and related
+ * words and translations. It is written at import time, so the export decodes a few strings instead of databinding
+ * the whole JSON. Lists keep their null elements and the distinction between a missing and an empty list, so the
+ * renderers produce the same output as from the parsed JSON.
+ * <p>
+ * Lengths and counts are unsigned varints shifted by one, zero stands for {@code null}; strings are UTF-8.
+ * The first byte is the format version, data of an unknown version decodes to {@code null}.
+ */
+public final class WiktionaryEntryCodec {
+
+	private static final int VERSION = 1;
+
+	private WiktionaryEntryCodec() {}
+
+	public static byte[] encode(WiktionaryEntry entry) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(VERSION);
+			writeString(out, entry.getWord());
+			writeString(out, entry.getPos());
+			writeString(out, entry.getLang());
+			writeString(out, entry.getLang_code());
+			writeList(out, entry.getSenses(), (o, s) -> {
+				writeString(o, s.getSense());
+				writeList(o, s.getGlosses(), WiktionaryEntryCodec::writeString);
+			});
+			writeList(out, entry.getSounds(), (o, s) -> writeString(o, s.getIpa()));
+			writeList(out, entry.getForms(), (o, f) -> {
+				writeString(o, f.getForm());
+				writeList(o, f.getTags(), WiktionaryEntryCodec::writeString);
+			});
+			writeList(out, entry.getEtymology_texts(), WiktionaryEntryCodec::writeString);
+			writeList(out, entry.getDerived(), (o, d) -> writeString(o, d.getWord()));
+			writeList(out, entry.getRelated(), (o, r) -> writeString(o, r.getWord()));
+			writeList(out, entry.getTranslations(), (o, t) -> {
+				writeString(o, t.getLang());
+				writeString(o, t.getLang_code());
+				writeString(o, t.getWord());
+			});
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * @return entry with the encoded fields set, {@code null} when there is no data or it is of an unknown version
+	 * @throws IllegalArgumentException when the data is malformed
+	 */
+	public static WiktionaryEntry decode(byte[] data) {
+		if (data == null || data.length == 0 || data[0] != VERSION) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 1, data.length - 1))) {
+			WiktionaryEntry entry = new WiktionaryEntry();
+			entry.setWord(readString(in));
+			entry.setPos(readString(in));
+			entry.setLang(readString(in));
+			entry.setLang_code(readString(in));
+			entry.setSenses(readList(in, i -> {
+				Sense sense = new Sense();
+				sense.setSense(readString(i));
+				sense.setGlosses(readList(i, WiktionaryEntryCodec::readString));
+				return sense;
+			}));
+			entry.setSounds(readList(in, i -> {
+				Sound sound = new Sound();
+				sound.setIpa(readString(i));
+				return sound;
+			}));
+			entry.setForms(readList(in, i -> {
+				Form form = new Form();
+				form.setForm(readString(i));
+				form.setTags(readList(i, WiktionaryEntryCodec::readString));
+				return form;
+			}));
+			entry.setEtymology_texts(readList(in, WiktionaryEntryCodec::readString));
+			entry.setDerived(readList(in, i -> {
+				Derived derived = new Derived();
+				derived.setWord(readString(i));
+				return derived;
+			}));
+			entry.setRelated(readList(in, i -> {
+				Related related = new Related();
+				related.setWord(readString(i));
+				return related;
+			}));
+			entry.setTranslations(readList(in, i -> {
+				Translation translation = new Translation();
+				translation.setLang(readString(i));
+				translation.setLang_code(readString(i));
+				translation.setWord(readString(i));
+				return translation;
+			}));
+			return entry;
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Malformed entry data", e);
+		}
+	}
+
+	private interface Writer<T> {
+		void write(DataOutputStream out, T value) throws IOException;
+	}
+
+	private interface Reader<T> {
+		T read(DataInputStream in) throws IOException;
+	}
+
+	private static <T> void writeList(DataOutputStream out, List<T> list, Writer<? super T> writer) throws IOException {
+		if (list == null) {
+			writeVarint(out, 0);
+			return;
+		}
+		writeVarint(out, list.size() + 1);
+		for (T item : list) {
+			out.writeBoolean(item != null);
+			if (item != null) {
+				writer.write(out, item);
+			}
+		}
+	}
+
+	private static <T> List<T> readList(DataInputStream in, Reader<T> reader) throws IOException {
+		int size = readVarint(in) - 1;
+		if (size < 0) {
+			return null;
+		}
+		// every element takes at least a byte, so a malformed size cannot allocate more than the data
+		List<T> list = new ArrayList<>(Math.min(size, in.available()));
+		for (int i = 0; i < size; i++) {
+			list.add(in.readBoolean() ? reader.read(in) : null);
+		}
+		return list;
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			writeVarint(out, 0);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarint(out, bytes.length + 1);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = readVarint(in) - 1;
+		if (length < 0) {
+			return null;
+		}
+		if (length > in.available()) {
+			throw new EOFException();
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeVarint(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte(value & 0x7F | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static int readVarint(DataInputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint");
+	}
+}
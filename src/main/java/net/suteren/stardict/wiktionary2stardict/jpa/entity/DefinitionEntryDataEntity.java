@@ -0,0 +1,7 @@
+package net.suteren.stardict.wiktionary2stardict.jpa.entity;
+
+/**
+ * Pre-parsed renderer fields of a definition, see {@code WiktionaryEntryCodec}.
+ */
+public record DefinitionEntryDataEntity(Long id, byte[] entryData) {
+}
@@ -0,0 +1,7 @@
+package net.suteren.stardict.wiktionary2stardict.jpa.entity;
+
+/**
+ * Stored JSON of a definition, either plain or compressed, see {@link JsonCodec}.
+ */
+public record DefinitionJsonEntity(Long id, String json, JsonCodec jsonCodec, Long jsonDictionaryId, byte[] jsonData) {
+}
@@ -0,0 +1,4 @@
+package net.suteren.stardict.wiktionary2stardict.jpa.entity;
+
+public record DefinitionWordEntity(Long id, String language, String word) {
+}
@@ -0,0 +1,7 @@
+package net.suteren.stardict.wiktionary2stardict.jpa.entity;
+
+/**
+ * Stored state of an entry an incremental import compares the incoming entry with.
+ */
+public record EntryStateEntity(Long id, String entryKey, String contentHash) {
+}
@@ -0,0 +1,39 @@
+package net.suteren.stardict.wiktionary2stardict.jpa.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Distinct link word (a gloss or a synonym). Links refer to it by id, so the word is stored once and links are joined
+ * by comparing integers. The word is looked up and kept unique by its digest: a B-tree entry of a long word in
+ * a multibyte script would exceed the size PostgreSQL allows.
+ */
+@NoArgsConstructor
+@Table(name = "gloss", indexes = {
+	@Index(columnList = "word_hash", name = "idx_gloss_word_hash", unique = true) })
+@Getter @Setter
+@Entity public class GlossEntity {
+
+	public GlossEntity(String word, String wordHash) {
+		this.word = word;
+		this.wordHash = wordHash;
+	}
+
+	@SequenceGenerator(name = "gloss_seq", sequenceName = "gloss_seq", allocationSize = 50)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "gloss_seq")
+	@Column(nullable = false)
+	@Id private Long id;
+
+	@Column(length = 1024, nullable = false) private String word;
+	/** Hex SHA-256 digest of the word in UTF-8. */
+	@Column(length = 64, nullable = false) private String wordHash;
+}
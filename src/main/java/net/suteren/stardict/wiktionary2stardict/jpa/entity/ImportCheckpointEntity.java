@@ -0,0 +1,35 @@
+package net.suteren.stardict.wiktionary2stardict.jpa.entity;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Progress of an unfinished import: the input (file path or URL) and the byte offset up to which
+ * its entries are committed. A file imported in parallel byte ranges has one checkpoint per range,
+ * keyed by the file path and the range start, which also records where the range ends. A downloaded input records
+ * the ETag and Last-Modified of the dump, so it is resumed only while the dump is unchanged.
+ */
+@Table(name = "import_checkpoint")
+@Getter @Setter
+@Entity public class ImportCheckpointEntity {
+
+	@Column(length = 2048, nullable = false)
+	@Id private String input;
+
+	@Column private String source;
+	@Column private long byteOffset;
+	@Column private long entries;
+	@Column private Long inputSize;
+	@Column private Long inputModified;
+	@Column private Instant updated;
+	@Column private Long rangeEnd;
+	@Column private Long importRun;
+	@Column(length = 1024) private String etag;
+	@Column private String lastModified;
+}
@@ -0,0 +1,13 @@
+package net.suteren.stardict.wiktionary2stardict.jpa.entity;
+
+/**
+ * Storage format of the JSON of a definition.
+ */
+public enum JsonCodec {
+	/** Plain text in {@code json}. */
+	NONE,
+	/** Deflate with a preset dictionary of the language in {@code json_data}. */
+	DEFLATE,
+	/** Zstandard with a trained dictionary of the language in {@code json_data}. */
+	ZSTD
+}
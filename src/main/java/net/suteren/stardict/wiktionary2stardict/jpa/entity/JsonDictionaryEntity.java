@@ -0,0 +1,40 @@
+package net.suteren.stardict.wiktionary2stardict.jpa.entity;
+
+import java.time.Instant;
+
+import org.hibernate.Length;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Compression dictionary shared by the definitions of a language, built from a sample of their JSON.
+ * Dictionaries are never changed once stored, definitions refer to the one they were compressed with.
+ */
+@Table(name = "json_dictionary", indexes = {
+	@Index(columnList = "language, codec", name = "idx_json_dictionary_language_codec") })
+@Getter @Setter
+@Entity public class JsonDictionaryEntity {
+
+	@SequenceGenerator(name = "json_dictionary_seq", sequenceName = "json_dictionary_seq", allocationSize = 1)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "json_dictionary_seq")
+	@Column(nullable = false)
+	@Id private Long id;
+
+	@Column private String language;
+	@Enumerated(EnumType.STRING)
+	@Column(length = 16) private JsonCodec codec;
+	@Column private int samples;
+	@Column private Instant created;
+	@Column(length = Length.LONG32) private byte[] data;
+}
@@ -0,0 +1,22 @@
+package net.suteren.stardict.wiktionary2stardict.jpa.entity;
+
+import java.io.Serializable;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Primary key of {@link LanguagePairStatsEntity}.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode
+@Getter @Setter
+public class LanguagePairId implements Serializable {
+
+	private String fromLang;
+	private String toLang;
+}
@@ -0,0 +1,27 @@
+package net.suteren.stardict.wiktionary2stardict.jpa.entity;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Number of translation pairs of a language combination, refreshed whenever an import or a cleanup completes,
+ * so an export of all combinations knows them without scanning the pairs.
+ */
+@Table(name = "language_pair_stats")
+@IdClass(LanguagePairId.class)
+@Getter @Setter
+@Entity public class LanguagePairStatsEntity {
+
+	@Id private String fromLang;
+	@Id private String toLang;
+
+	@Column private long pairCount;
+	@Column private Instant updated;
+}
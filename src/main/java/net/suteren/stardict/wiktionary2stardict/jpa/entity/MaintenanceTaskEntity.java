@@ -0,0 +1,30 @@
+package net.suteren.stardict.wiktionary2stardict.jpa.entity;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * One-off maintenance of stored data which has completed, so it is not checked for again on every start.
+ */
+@NoArgsConstructor
+@Table(name = "maintenance_task")
+@Getter @Setter
+@Entity public class MaintenanceTaskEntity {
+
+	public MaintenanceTaskEntity(String name, Instant completed) {
+		this.name = name;
+		this.completed = completed;
+	}
+
+	@Column(length = 64, nullable = false)
+	@Id private String name;
+
+	@Column private Instant completed;
+}
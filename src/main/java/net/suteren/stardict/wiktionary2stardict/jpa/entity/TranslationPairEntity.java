@@ -0,0 +1,45 @@
+package net.suteren.stardict.wiktionary2stardict.jpa.entity;
+
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.ForeignKey;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Materialised translation: a definition in one language paired with a definition of the same part of speech
+ * in another language sharing a meaning link word. Pairs are maintained while importing, so the export reads them
+ * by language instead of joining definitions and links. A pair is deleted by the database together with
+ * either of its definitions.
+ */
+@Table(name = "translation_pair", indexes = {
+	@Index(columnList = "from_lang, to_lang", name = "idx_translation_pair_languages"),
+	@Index(columnList = "target_id", name = "idx_translation_pair_target") })
+@IdClass(TranslationPairId.class)
+@Getter @Setter
+@Entity public class TranslationPairEntity {
+
+	@JoinColumn(name = "source_id", nullable = false, foreignKey = @ForeignKey(name = "fk_translation_pair_source"))
+	@OnDelete(action = OnDeleteAction.CASCADE)
+	@ManyToOne(fetch = FetchType.LAZY, optional = false)
+	@Id private WordDefinitionEntity source;
+
+	@JoinColumn(name = "target_id", nullable = false, foreignKey = @ForeignKey(name = "fk_translation_pair_target"))
+	@OnDelete(action = OnDeleteAction.CASCADE)
+	@ManyToOne(fetch = FetchType.LAZY, optional = false)
+	@Id private WordDefinitionEntity target;
+
+	@Column private String fromLang;
+	@Column private String toLang;
+	@Column private String pos;
+}
@@ -0,0 +1,8 @@
+package net.suteren.stardict.wiktionary2stardict.jpa.entity;
+
+/**
+ * Translation as the export reads it: the source word and the id and word of the translating definition,
+ * whose JSON is loaded separately.
+ */
+public record TranslationRowEntity(String word, Long definitionId, String definitionWord) {
+}
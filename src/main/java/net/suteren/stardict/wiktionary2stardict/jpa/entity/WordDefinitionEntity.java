@@ -1,19 +1,22 @@
 package net.suteren.stardict.wiktionary2stardict.jpa.entity;
 
 import java.util.Collection;
-import java.util.UUID;
+
+import org.hibernate.Length;
 
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.ForeignKey;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
-import jakarta.persistence.Lob;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import lombok.Getter;
 import lombok.Setter;
@@ -22,21 +25,42 @@ import lombok.Setter;
 	@Index(columnList = "word", name = "idx_definition_word"),
 	@Index(columnList = "language", name = "idx_definition_language"),
 	@Index(columnList = "source", name = "idx_definition_source"),
-	@Index(columnList = "type", name = "idx_definition_type") })
+	@Index(columnList = "type", name = "idx_definition_type"),
+	@Index(columnList = "source, entry_key", name = "idx_definition_source_entry_key"),
+	@Index(columnList = "language, normalized_word", name = "idx_definition_language_normalized_word") })
 @Getter @Setter
 @Entity public class WordDefinitionEntity {
 
-	@GeneratedValue(strategy = GenerationType.UUID)
+	@SequenceGenerator(name = "definition_seq", sequenceName = "definition_seq", allocationSize = 50)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "definition_seq")
 	@Column(nullable = false)
-	@Id private UUID id;
+	@Id private Long id;
 
 	@Column private String source;
 	@Column private String language;
 	@Column private String word;
+	/** Lower case word for lookups, see {@code WordIndexService}. */
+	@Column private String normalizedWord;
 	@Column private String type;
 
-	@Lob
-	@Column private String json;
+	/** Digest of the natural key (language, word, part of speech, etymology and sense ids) identifying the entry across dumps. */
+	@Column(length = 64) private String entryKey;
+	/** Digest of the JSON, tells whether an entry changed since the last import. */
+	@Column(length = 64) private String contentHash;
+	/** Import run which last wrote or confirmed the entry; entries of a source not confirmed by a run have vanished. */
+	@Column private Long importRun;
+
+	/** Plain JSON, {@code null} when it is stored compressed. */
+	@Column(length = Length.LONG32) private String json;
+	/** How the JSON is stored; {@code null} for entries imported before compression was supported, which are plain. */
+	@Enumerated(EnumType.STRING)
+	@Column(length = 16) private JsonCodec jsonCodec;
+	/** {@link JsonDictionaryEntity} the JSON was compressed with, {@code null} when compressed without a dictionary. */
+	@Column private Long jsonDictionaryId;
+	/** Compressed JSON. */
+	@Column(length = Length.LONG32) private byte[] jsonData;
+	/** Fields of the JSON used by the export, see {@code WiktionaryEntryCodec}; {@code null} for entries imported before it existed. */
+	@Column(length = Length.LONG32) private byte[] entryData;
 
 	@JoinColumn(name = "word_definition_id", nullable = false, foreignKey = @ForeignKey(name = "fk_link_word_definition"))
 	@OneToMany(cascade = CascadeType.ALL, orphanRemoval = true) private Collection<WordDefinitionLinkEntity> links;
@@ -1,7 +1,5 @@
 package net.suteren.stardict.wiktionary2stardict.jpa.entity;
 
-import java.util.UUID;
-
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Enumerated;
@@ -10,7 +8,9 @@ import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -19,12 +19,12 @@ import lombok.Setter;
 @Table(
 	name = "link",
 	indexes = {
-		@Index(columnList = "word", name = "idx_link_word"),
+		@Index(columnList = "gloss_id", name = "idx_link_gloss"),
 		@Index(columnList = "type", name = "idx_link_type"),
 		@Index(columnList = "language", name = "idx_link_language"),
 		@Index(columnList = "word_definition_id,type", name = "idx_link_def_type"),
-		@Index(columnList = "type,word", name = "idx_link_type_word"),
-		@Index(columnList = "type,word,language", name = "idx_link_type_word_language")
+		@Index(columnList = "type,gloss_id", name = "idx_link_type_gloss"),
+		@Index(columnList = "type,gloss_id,language", name = "idx_link_type_gloss_language")
 	}
 )
 @Getter @Setter
@@ -36,9 +36,13 @@ import lombok.Setter;
 		this.type = type;
 	}
 
-	@GeneratedValue(strategy = GenerationType.UUID) @Column(nullable = false)
-	@Id private UUID id;
-	@Column(length = 1024) String word;
+	@SequenceGenerator(name = "link_seq", sequenceName = "link_seq", allocationSize = 50)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "link_seq") @Column(nullable = false)
+	@Id private Long id;
+	/** Word of the link until it is interned, see {@link #glossId}. */
+	@Transient String word;
+	/** Id of the interned {@link GlossEntity}. */
+	@Column Long glossId;
 	@Column String language;
 	@Enumerated(EnumType.ORDINAL)
 	@Column LinkType type;
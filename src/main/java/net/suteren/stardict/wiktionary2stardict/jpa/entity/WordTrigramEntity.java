@@ -0,0 +1,38 @@
+package net.suteren.stardict.wiktionary2stardict.jpa.entity;
+
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.ForeignKey;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Trigram of the normalised word of a definition. A definition whose word contains a term has all trigrams
+ * of the term, so infix lookups narrow the candidates by the trigrams before matching the word itself.
+ * Trigrams are deleted by the database together with their definition.
+ */
+@Table(name = "word_trigram", indexes = {
+	@Index(columnList = "language, trigram, definition_id", name = "idx_word_trigram_lookup"),
+	@Index(columnList = "definition_id", name = "idx_word_trigram_definition") })
+@IdClass(WordTrigramId.class)
+@Getter @Setter
+@Entity public class WordTrigramEntity {
+
+	@Id @Column private String language;
+	@Id @Column(length = 16) private String trigram;
+
+	@JoinColumn(name = "definition_id", nullable = false, foreignKey = @ForeignKey(name = "fk_word_trigram_definition"))
+	@OnDelete(action = OnDeleteAction.CASCADE)
+	@ManyToOne(fetch = FetchType.LAZY, optional = false)
+	@Id private WordDefinitionEntity definition;
+}
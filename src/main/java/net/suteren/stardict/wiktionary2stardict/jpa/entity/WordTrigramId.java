@@ -0,0 +1,23 @@
+package net.suteren.stardict.wiktionary2stardict.jpa.entity;
+
+import java.io.Serializable;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Primary key of {@link WordTrigramEntity}.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode
+@Getter @Setter
+public class WordTrigramId implements Serializable {
+
+	private String language;
+	private String trigram;
+	private Long definition;
+}
@@ -0,0 +1,14 @@
+package net.suteren.stardict.wiktionary2stardict.jpa.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.GlossEntity;
+
+@Repository public interface GlossRepository extends JpaRepository<GlossEntity, Long> {
+
+	List<GlossEntity> findByWordHashIn(Collection<String> wordHashes);
+}
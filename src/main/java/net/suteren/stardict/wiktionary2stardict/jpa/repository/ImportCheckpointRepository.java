@@ -0,0 +1,19 @@
+package net.suteren.stardict.wiktionary2stardict.jpa.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.ImportCheckpointEntity;
+
+@Repository public interface ImportCheckpointRepository extends JpaRepository<ImportCheckpointEntity, String> {
+
+	List<ImportCheckpointEntity> findByInputStartingWith(String prefix);
+
+	@Modifying
+	@Query("delete from ImportCheckpointEntity c where c.source = :source")
+	int deleteBySource(String source);
+}
@@ -0,0 +1,14 @@
+package net.suteren.stardict.wiktionary2stardict.jpa.repository;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.JsonCodec;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.JsonDictionaryEntity;
+
+@Repository public interface JsonDictionaryRepository extends JpaRepository<JsonDictionaryEntity, Long> {
+
+	Optional<JsonDictionaryEntity> findFirstByLanguageAndCodecOrderByIdDesc(String language, JsonCodec codec);
+}
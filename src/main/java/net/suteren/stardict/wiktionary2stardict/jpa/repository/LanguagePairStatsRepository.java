@@ -0,0 +1,50 @@
+package net.suteren.stardict.wiktionary2stardict.jpa.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.LanguageCombinationEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.LanguagePairId;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.LanguagePairStatsEntity;
+
+/**
+ * Language combinations are listed from the largest number of translation pairs.
+ */
+@Repository public interface LanguagePairStatsRepository extends JpaRepository<LanguagePairStatsEntity, LanguagePairId> {
+
+	@Query("select s.fromLang, s.toLang from LanguagePairStatsEntity s order by s.pairCount desc")
+	List<LanguageCombinationEntity> findLanguageCombinations();
+
+	@Query("select s.fromLang, s.toLang from LanguagePairStatsEntity s where s.fromLang = :fromLang order by s.pairCount desc")
+	List<LanguageCombinationEntity> findLanguageCombinationsFrom(String fromLang);
+
+	@Query("select s.fromLang, s.toLang from LanguagePairStatsEntity s where s.toLang = :toLang order by s.pairCount desc")
+	List<LanguageCombinationEntity> findLanguageCombinationsTo(String toLang);
+
+	/**
+	 * Recounts the translation pairs of every language combination; a grouped scan of the pair languages index.
+	 */
+	@Transactional
+	default int refresh() {
+		deleteAllStats();
+		return insertStats();
+	}
+
+	@Modifying
+	@Query(value = "delete from language_pair_stats", nativeQuery = true)
+	int deleteAllStats();
+
+	@Modifying
+	@Query(value = """
+		insert into language_pair_stats (from_lang, to_lang, pair_count, updated)
+		select from_lang, to_lang, count(*), current_timestamp
+		from translation_pair
+		group by from_lang, to_lang
+		""", nativeQuery = true)
+	int insertStats();
+}
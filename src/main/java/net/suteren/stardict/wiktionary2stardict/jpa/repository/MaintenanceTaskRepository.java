@@ -0,0 +1,9 @@
+package net.suteren.stardict.wiktionary2stardict.jpa.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.MaintenanceTaskEntity;
+
+@Repository public interface MaintenanceTaskRepository extends JpaRepository<MaintenanceTaskEntity, String> {
+}
@@ -0,0 +1,149 @@
+package net.suteren.stardict.wiktionary2stardict.jpa.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.QueryHint;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.TranslationEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.TranslationPairEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.TranslationPairId;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.TranslationRowEntity;
+
+/**
+ * Pairs are derived from definitions and their meaning links ({@code link.type = 1}, {@link
+ * net.suteren.stardict.wiktionary2stardict.jpa.entity.LinkType#MEANING}): two definitions of different languages
+ * and the same part of speech other than a name, sharing a gloss, translate each other.
+ */
+@Repository public interface TranslationPairRepository extends JpaRepository<TranslationPairEntity, TranslationPairId> {
+
+	/**
+	 * Streams the translations of a language combination ordered by the source word. Rows are fetched from
+	 * a cursor in blocks; the caller has to close the stream within the transaction.
+	 */
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+	@Query("""
+		select s.word, t.id, t.word
+		from TranslationPairEntity p
+			join p.source s
+			join p.target t
+		where p.fromLang = :fromLang
+		  and p.toLang = :toLang
+		order by s.word
+		""")
+	Stream<TranslationRowEntity> streamTranslations(String fromLang, String toLang);
+
+	/**
+	 * Translations of the source words matching a {@code like} pattern with {@code \} as the escape character.
+	 * The pattern is matched against the lower case word; use for prefix patterns, which the language and word index
+	 * of definitions serves.
+	 */
+	@Query("""
+		select s, t
+		from TranslationPairEntity p
+			join p.source s
+			join p.target t
+		where p.toLang = :toLang
+		  and s.id in (
+			select d.id from WordDefinitionEntity d
+			where d.language = :fromLang
+			  and d.normalizedWord like :pattern escape '\\')
+		""")
+	List<TranslationEntity> findTranslationsByWord(String fromLang, String toLang, String pattern);
+
+	/**
+	 * Translations of the source words matching a {@code like} pattern, narrowed down to the words having
+	 * all the given trigrams first; use for infix patterns.
+	 */
+	@Query("""
+		select s, t
+		from TranslationPairEntity p
+			join p.source s
+			join p.target t
+		where p.toLang = :toLang
+		  and s.normalizedWord like :pattern escape '\\'
+		  and s.id in (
+			select w.definition.id from WordTrigramEntity w
+			where w.language = :fromLang
+			  and w.trigram in :trigrams
+			group by w.definition.id
+			having count(w.trigram) = :trigramCount)
+		""")
+	List<TranslationEntity> findTranslationsByTrigrams(String fromLang, String toLang, String pattern, Collection<String> trigrams,
+		long trigramCount);
+
+	/**
+	 * Adds the pairs of newly written definitions with any definitions, in both directions. The definitions
+	 * must not have any pairs yet.
+	 */
+	default void addPairsOf(Collection<Long> ids) {
+		insertPairsFrom(ids);
+		insertPairsTo(ids);
+	}
+
+	@Modifying
+	@Query(value = """
+		insert into translation_pair (source_id, target_id, from_lang, to_lang, pos)
+		select distinct d1.id, d2.id, d1.language, d2.language, d1.type
+		from definition d1
+			join link l1 on l1.word_definition_id = d1.id and l1.type = 1
+			join link l2 on l2.type = 1 and l2.gloss_id = l1.gloss_id
+			join definition d2 on d2.id = l2.word_definition_id
+		where d1.id in :ids
+		  and d2.type = d1.type
+		  and d1.type <> 'name'
+		  and d2.language <> d1.language
+		""", nativeQuery = true)
+	int insertPairsFrom(Collection<Long> ids);
+
+	@Modifying
+	@Query(value = """
+		insert into translation_pair (source_id, target_id, from_lang, to_lang, pos)
+		select distinct d1.id, d2.id, d1.language, d2.language, d1.type
+		from definition d2
+			join link l2 on l2.word_definition_id = d2.id and l2.type = 1
+			join link l1 on l1.type = 1 and l1.gloss_id = l2.gloss_id
+			join definition d1 on d1.id = l1.word_definition_id
+		where d2.id in :ids
+		  and d1.id not in :ids
+		  and d1.type = d2.type
+		  and d1.type <> 'name'
+		  and d1.language <> d2.language
+		""", nativeQuery = true)
+	int insertPairsTo(Collection<Long> ids);
+
+	/**
+	 * Builds all pairs from scratch, e.g. after a bulk load which skipped maintaining them.
+	 */
+	@Transactional
+	default int rebuild() {
+		deleteAllPairs();
+		return insertAllPairs();
+	}
+
+	@Modifying
+	@Query(value = "delete from translation_pair", nativeQuery = true)
+	int deleteAllPairs();
+
+	@Modifying
+	@Query(value = """
+		insert into translation_pair (source_id, target_id, from_lang, to_lang, pos)
+		select distinct d1.id, d2.id, d1.language, d2.language, d1.type
+		from definition d1
+			join link l1 on l1.word_definition_id = d1.id and l1.type = 1
+			join link l2 on l2.type = 1 and l2.gloss_id = l1.gloss_id
+			join definition d2 on d2.id = l2.word_definition_id
+		where d2.type = d1.type
+		  and d1.type <> 'name'
+		  and d2.language <> d1.language
+		""", nativeQuery = true)
+	int insertAllPairs();
+}
@@ -1,79 +1,75 @@
 package net.suteren.stardict.wiktionary2stardict.jpa.repository;
 
+import java.util.Collection;
 import java.util.List;
-import java.util.UUID;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
-import net.suteren.stardict.wiktionary2stardict.jpa.entity.LanguageCombinationEntity;
-import net.suteren.stardict.wiktionary2stardict.jpa.entity.TranslationEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.DefinitionEntryDataEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.DefinitionJsonEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.DefinitionWordEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.EntryStateEntity;
 import net.suteren.stardict.wiktionary2stardict.jpa.entity.WordDefinitionEntity;
 
-@Repository public interface WordDefinitionRepository extends JpaRepository<WordDefinitionEntity, UUID> {
+@Repository public interface WordDefinitionRepository extends JpaRepository<WordDefinitionEntity, Long> {
 
-	@Query("""
-		select distinct d1, d2
-		from
-			WordDefinitionEntity d1
-				join d1.links l1,
-		    WordDefinitionEntity d2
-				join d2.links l2
-		where d1.language = :fromLang
-		  and d2.language = :toLang
-		  and d1.type = d2.type
-		  and d1.type != 'name'
-		  and l1.type = net.suteren.stardict.wiktionary2stardict.jpa.entity.LinkType.MEANING
-		  and l2.type = net.suteren.stardict.wiktionary2stardict.jpa.entity.LinkType.MEANING
-		  and l1.word = l2.word
-		""")
-	List<TranslationEntity> findAllTranslations(String fromLang, String toLang);
+	@Query("select d.id, d.language, d.word from WordDefinitionEntity d where d.normalizedWord is null")
+	List<DefinitionWordEntity> findWithoutNormalizedWord(Limit limit);
 
-	@Query("""
-		select distinct e1, e2
-		from WordDefinitionEntity e1
-		join e1.links l1, WordDefinitionEntity e2
-		join e2.links l2
-		where e1.language = :fromLang
-		  and e2.language = :toLang
-		  and e1.type = e2.type
-		  and e1.type != 'name'
-		  and lower(e1.word) like lower(concat('%', :word, '%'))
-		  and l1.type = net.suteren.stardict.wiktionary2stardict.jpa.entity.LinkType.MEANING
-		  and l2.type = net.suteren.stardict.wiktionary2stardict.jpa.entity.LinkType.MEANING
-		  and l1.word = l2.word
-		""")
-	List<TranslationEntity> findTranslation(String fromLang, String toLang, String word);
+	@Query("select d.id, d.json, d.jsonCodec, d.jsonDictionaryId, d.jsonData from WordDefinitionEntity d where d.id in :ids")
+	List<DefinitionJsonEntity> findJsonByIds(Collection<Long> ids);
 
-	@Query("""
-			select l1.language, l2.language
-			from WordDefinitionLinkEntity l1
-			join WordDefinitionLinkEntity l2
-				on l1.word = l2.word
-			where
-				l1.type = net.suteren.stardict.wiktionary2stardict.jpa.entity.LinkType.MEANING
-				and l2.type = net.suteren.stardict.wiktionary2stardict.jpa.entity.LinkType.MEANING
-				and l1.language != l2.language
-			group by l1.language, l2.language
-		""")
-	List<LanguageCombinationEntity> findLanguageCombinations();
+	@Query("select d.id, d.entryData from WordDefinitionEntity d where d.id in :ids")
+	List<DefinitionEntryDataEntity> findEntryDataByIds(Collection<Long> ids);
 
+	@Query("select d.id from WordDefinitionEntity d where d.source = :source")
+	List<Long> findIdsBySource(String source, Limit limit);
+
+	@Query("select d.id from WordDefinitionEntity d")
+	List<Long> findIds(Limit limit);
+
+	boolean existsBySource(String source);
+
+	/**
+	 * Stored entries of the source with the given natural keys the import run has not written or confirmed yet.
+	 */
 	@Query("""
-			select l1.language, l2.language
-			from WordDefinitionLinkEntity l1
-			join WordDefinitionLinkEntity l2
-				on l1.word = l2.word
-			where
-				l1.type = net.suteren.stardict.wiktionary2stardict.jpa.entity.LinkType.MEANING
-				and l2.type = net.suteren.stardict.wiktionary2stardict.jpa.entity.LinkType.MEANING
-				and l1.language = :language
-				and l1.language != l2.language
-			group by l1.language, l2.language
+		select d.id, d.entryKey, d.contentHash
+		from WordDefinitionEntity d
+		where d.source = :source
+		  and d.entryKey in :entryKeys
+		  and (d.importRun is null or d.importRun <> :importRun)
 		""")
-	List<LanguageCombinationEntity> findLanguageCombinations(String language);
+	List<EntryStateEntity> findEntryStates(String source, Collection<String> entryKeys, long importRun);
+
+	@Modifying
+	@Query("update WordDefinitionEntity d set d.importRun = :importRun where d.id in :ids")
+	int confirmImportRun(Collection<Long> ids, long importRun);
+
+	@Modifying
+	@Query(value = "delete from link where word_definition_id in :ids", nativeQuery = true)
+	int deleteLinksByDefinitionIds(Collection<Long> ids);
+
+	@Modifying
+	@Query("delete from WordDefinitionEntity d where d.id in :ids")
+	int deleteByIds(Collection<Long> ids);
 
-	void deleteBySource(String source);
+	@Modifying
+	@Query(value = """
+		delete from link
+		where word_definition_id in (
+			select d.id from definition d where d.source = :source and (d.import_run is null or d.import_run <> :importRun))
+		""", nativeQuery = true)
+	int deleteVanishedLinks(String source, long importRun);
 
-	long countBySource(String source);
+	/**
+	 * Deletes the entries of the source the import run has not written or confirmed; their links have to be deleted first.
+	 */
+	@Modifying
+	@Query("delete from WordDefinitionEntity d where d.source = :source and (d.importRun is null or d.importRun <> :importRun)")
+	int deleteVanished(String source, long importRun);
 }
@@ -14,6 +14,11 @@ import lombok.NoArgsConstructor;
  */
 @Data @NoArgsConstructor @AllArgsConstructor
 public class Sense {
+	/**
+	 * Identifier of the sense assigned by wiktextract, stable across dumps
+	 */
+	private String id;
+
 	/**
 	 * Processed definitions of this sense
 	 */
@@ -46,6 +46,9 @@ public class WiktionaryEntry {
     /** Etymology information explaining the word's origin */
     private List<String> etymology_texts;
 
+    /** Number of the etymology section when the word has several unrelated origins */
+    private Integer etymology_number;
+
     /** Different forms of the word (e.g., plural, past tense) */
     private List<Form> forms;
 
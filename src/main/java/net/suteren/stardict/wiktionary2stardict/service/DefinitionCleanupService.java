@@ -0,0 +1,103 @@
+package net.suteren.stardict.wiktionary2stardict.service;
+
+import java.util.List;
+import java.util.function.Function;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+import net.suteren.stardict.wiktionary2stardict.jpa.repository.ImportCheckpointRepository;
+import net.suteren.stardict.wiktionary2stardict.jpa.repository.WordDefinitionRepository;
+import net.suteren.stardict.wiktionary2stardict.sink.LanguagePartitions;
+
+/**
+ * Removes stored definitions with set based statements instead of loading and deleting every entity. Links
+ * and definitions are deleted by id in batches, each committed on its own, so the progress is logged and an interrupted
+ * cleanup keeps what it deleted. Translation pairs and word trigrams are deleted with their definitions by the database.
+ * Removing everything truncates the tables on PostgreSQL; a source owning whole language partitions has them dropped,
+ * see {@link LanguagePartitions}. Interned glosses are shared by all sources and kept.
+ */
+@Slf4j
+@Service public class DefinitionCleanupService {
+
+	private static final int BATCH_SIZE = 10_000;
+
+	private final WordDefinitionRepository repository;
+	private final ImportCheckpointRepository checkpointRepository;
+	private final LanguagePartitions languagePartitions;
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionTemplate transactionTemplate;
+
+	public DefinitionCleanupService(WordDefinitionRepository repository, ImportCheckpointRepository checkpointRepository,
+		LanguagePartitions languagePartitions, JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+		this.repository = repository;
+		this.checkpointRepository = checkpointRepository;
+		this.languagePartitions = languagePartitions;
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+	}
+
+	/**
+	 * Deletes all definitions and import checkpoints; must not be called within a transaction.
+	 *
+	 * @return number of deleted definitions
+	 */
+	public long deleteAll() {
+		long deleted;
+		if (isPostgreSQL()) {
+			// truncate reports no row count, the count is taken in the same transaction
+			deleted = transactionTemplate.execute(status -> {
+				Long count = jdbcTemplate.queryForObject("select count(*) from definition", Long.class);
+				jdbcTemplate.execute("truncate table translation_pair, word_trigram, link, definition");
+				return count;
+			});
+			log.info("Truncated {} definitions", deleted);
+		} else {
+			deleted = deleteInBatches("all sources", repository::findIds);
+		}
+		transactionTemplate.executeWithoutResult(status -> checkpointRepository.deleteAllInBatch());
+		return deleted;
+	}
+
+	/**
+	 * Deletes the definitions and import checkpoints of a source; must not be called within a transaction.
+	 *
+	 * @return number of deleted definitions
+	 */
+	public long deleteSource(String source) {
+		long deleted = languagePartitions.dropPartitionsOf(source);
+		deleted += deleteInBatches(source, limit -> repository.findIdsBySource(source, limit));
+		transactionTemplate.executeWithoutResult(status -> checkpointRepository.deleteBySource(source));
+		return deleted;
+	}
+
+	private long deleteInBatches(String label, Function<Limit, List<Long>> batchIds) {
+		long deleted = 0;
+		int batch;
+		do {
+			batch = transactionTemplate.execute(status -> {
+				List<Long> ids = batchIds.apply(Limit.of(BATCH_SIZE));
+				if (ids.isEmpty()) {
+					return 0;
+				}
+				repository.deleteLinksByDefinitionIds(ids);
+				return repository.deleteByIds(ids);
+			});
+			deleted += batch;
+			if (batch > 0) {
+				log.info("Deleted {} definitions of {}", deleted, label);
+			}
+		} while (batch > 0);
+		return deleted;
+	}
+
+	private boolean isPostgreSQL() {
+		return "PostgreSQL".equals(jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+			connection.getMetaData().getDatabaseProductName()));
+	}
+}
@@ -0,0 +1,212 @@
+package net.suteren.stardict.wiktionary2stardict.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * On-disk cache of Kaikki dumps keyed by URL. Every entry is a directory named after the SHA-256 of the URL holding
+ * the dump under its original file name, so the source label and compression can still be derived from it, and
+ * a metadata file with the ETag and Last-Modified of the response. A cached dump is revalidated with a conditional
+ * request, so an unchanged dump is not transferred again. Once the cache grows over its size limit, the least
+ * recently used entries are evicted. A fetched entry is pinned until its dump is {@link #release released}, so a dump
+ * is never evicted while it is being fetched, waits for its import or is being imported.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service public class DownloadCache {
+
+	private static final String METADATA_FILE = "entry.properties";
+	private static final String URL = "url";
+	private static final String ETAG = "etag";
+	private static final String LAST_MODIFIED = "last-modified";
+	private static final String LAST_USED = "last-used";
+
+	private final KaikkiDownloadService downloadService;
+	private final DownloadProperties properties;
+	/** Number of fetched but not yet released dumps per entry; guarded by the cache. */
+	private final Map<Path, Integer> pinned = new HashMap<>();
+
+	/**
+	 * @param file cached dump
+	 * @param modified whether the dump was transferred, {@code false} when the cached copy was still current
+	 */
+	public record CachedFile(File file, boolean modified) {
+	}
+
+	/**
+	 * Returns the cached dump of the given URL, downloading it when it is not cached yet or changed since.
+	 * The dump stays in the cache until it is {@link #release released}.
+	 */
+	public CachedFile fetch(URI uri, String fileName) throws IOException, InterruptedException {
+		Path entry = properties.getCacheDirectory().resolve(key(uri));
+		pin(entry);
+		boolean fetched = false;
+		try {
+			Files.createDirectories(entry);
+			File target = entry.resolve(fileName).toFile();
+			Properties metadata = readMetadata(entry);
+			KaikkiDownloadService.Validators cached = new KaikkiDownloadService.Validators(metadata.getProperty(ETAG),
+				metadata.getProperty(LAST_MODIFIED));
+			KaikkiDownloadService.DownloadResult result = downloadService.download(uri, target, cached);
+			metadata.setProperty(URL, uri.toString());
+			setOrRemove(metadata, ETAG, result.validators().etag());
+			setOrRemove(metadata, LAST_MODIFIED, result.validators().lastModified());
+			metadata.setProperty(LAST_USED, String.valueOf(System.currentTimeMillis()));
+			writeMetadata(entry, metadata);
+			if (result.modified()) {
+				log.info("Cached {} ({} MiB)", uri, result.size() >> 20);
+			} else {
+				log.info("Using the cached copy of {}", uri);
+			}
+			evict();
+			fetched = true;
+			return new CachedFile(target, result.modified());
+		} finally {
+			if (!fetched) {
+				unpin(entry);
+			}
+		}
+	}
+
+	/**
+	 * Allows a fetched dump to be evicted again, once it is imported or skipped, and evicts what exceeds the size limit.
+	 */
+	public void release(CachedFile cached) {
+		unpin(cached.file().toPath().getParent());
+		try {
+			evict();
+		} catch (IOException e) {
+			log.warn("Failed to evict from the download cache: {}", e.getMessage());
+		}
+	}
+
+	private synchronized void pin(Path entry) {
+		pinned.merge(entry, 1, Integer::sum);
+	}
+
+	private synchronized void unpin(Path entry) {
+		pinned.computeIfPresent(entry, (key, count) -> count > 1 ? count - 1 : null);
+	}
+
+	/**
+	 * Deletes the least recently used entries until the cache fits its size limit.
+	 */
+	synchronized void evict() throws IOException {
+		Path directory = properties.getCacheDirectory();
+		if (!Files.isDirectory(directory)) {
+			return;
+		}
+		List<Path> entries;
+		try (Stream<Path> list = Files.list(directory)) {
+			entries = list.filter(Files::isDirectory).toList();
+		}
+		Map<Path, Long> sizes = new HashMap<>();
+		for (Path entry : entries) {
+			sizes.put(entry, size(entry));
+		}
+		long total = sizes.values().stream().mapToLong(Long::longValue).sum();
+		long limit = properties.getCacheMaxSize().toBytes();
+		if (total <= limit) {
+			return;
+		}
+		List<Path> byLastUse = entries.stream()
+			.filter(entry -> !pinned.containsKey(entry))
+			.sorted(Comparator.comparingLong(this::lastUsed))
+			.toList();
+		for (Path entry : byLastUse) {
+			if (total <= limit) {
+				break;
+			}
+			log.info("Evicting {} from the download cache", readMetadata(entry).getProperty(URL, entry.toString()));
+			delete(entry);
+			total -= sizes.get(entry);
+		}
+	}
+
+	private long lastUsed(Path entry) {
+		try {
+			String lastUsed = readMetadata(entry).getProperty(LAST_USED);
+			return lastUsed != null ? Long.parseLong(lastUsed) : Files.getLastModifiedTime(entry).toMillis();
+		} catch (IOException | NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	private static long size(Path entry) throws IOException {
+		try (Stream<Path> files = Files.walk(entry)) {
+			return files.filter(Files::isRegularFile)
+				.mapToLong(file -> {
+					try {
+						return Files.size(file);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				})
+				.sum();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	private static void delete(Path entry) throws IOException {
+		try (Stream<Path> files = Files.walk(entry)) {
+			for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+				Files.deleteIfExists(file);
+			}
+		}
+	}
+
+	private static Properties readMetadata(Path entry) throws IOException {
+		Properties metadata = new Properties();
+		Path file = entry.resolve(METADATA_FILE);
+		if (Files.isRegularFile(file)) {
+			try (InputStream in = Files.newInputStream(file)) {
+				metadata.load(in);
+			}
+		}
+		return metadata;
+	}
+
+	private static void writeMetadata(Path entry, Properties metadata) throws IOException {
+		try (OutputStream out = Files.newOutputStream(entry.resolve(METADATA_FILE))) {
+			metadata.store(out, null);
+		}
+	}
+
+	private static void setOrRemove(Properties metadata, String key, String value) {
+		if (value != null) {
+			metadata.setProperty(key, value);
+		} else {
+			metadata.remove(key);
+		}
+	}
+
+	private static String key(URI uri) {
+		try {
+			return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(uri.toString().getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package net.suteren.stardict.wiktionary2stardict.service;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Settings of Kaikki dump downloads.
+ */
+@Getter @Setter
+@ConfigurationProperties(prefix = "wiktionary2stardict.download")
+public class DownloadProperties {
+
+	/** Compressed variant of the dumps to download; it is decompressed while importing. */
+	private Compression compression = Compression.NONE;
+
+	/**
+	 * Number of languages downloaded at once on virtual threads into the cache; every dump is imported as soon as
+	 * its download is complete.
+	 */
+	private int concurrency = 4;
+
+	/**
+	 * Import the dumps one by one while they are still downloading, bypassing the cache. Saves the disk space,
+	 * but every run transfers the dumps again.
+	 */
+	private boolean stream = false;
+
+	/** Cache of downloaded dumps, revalidated with conditional requests. */
+	private Path cacheDirectory = Path.of("build", "kaikki-cache");
+
+	/** Size the cache is trimmed to by evicting the least recently used dumps. */
+	private DataSize cacheMaxSize = DataSize.ofGigabytes(20);
+
+	/** How long the catalogue of Kaikki languages stored in the cache directory is used before it is fetched again. */
+	private Duration catalogTtl = Duration.ofDays(1);
+
+	/** Number of attempts of a download before it fails. */
+	private int maxAttempts = 5;
+
+	/** Delay before the first retry of a failed download, doubled with every further attempt. */
+	private Duration backoff = Duration.ofSeconds(2);
+
+	/** Longest delay between two attempts. */
+	private Duration maxBackoff = Duration.ofMinutes(1);
+
+	/** How often the progress of a running download is logged. */
+	private Duration progressInterval = Duration.ofSeconds(10);
+
+	@Getter
+	@RequiredArgsConstructor
+	public enum Compression {
+		NONE(""), GZ(".gz"), BZ2(".bz2"), ZST(".zst"), XZ(".xz");
+
+		private final String suffix;
+	}
+}
@@ -0,0 +1,118 @@
+package net.suteren.stardict.wiktionary2stardict.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.GlossEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.WordDefinitionEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.WordDefinitionLinkEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.repository.GlossRepository;
+
+/**
+ * Interns link words into the gloss table. New glosses are committed in a transaction of their own right away and
+ * interning is serialised, so concurrent imports never insert a word twice and the ids of recently used glosses can
+ * be cached. The transaction needs a connection of its own while the caller may hold one, see
+ * {@link ImportConnectionPool}. A gloss is never deleted; one no longer used by any link is harmless.
+ */
+@Slf4j
+@Service public class GlossService {
+
+	private static final int LOOKUP_BATCH_SIZE = 1000;
+
+	private final GlossRepository repository;
+	private final TransactionTemplate transactionTemplate;
+	private final Map<String, Long> cache;
+
+	public GlossService(GlossRepository repository, ImportProperties importProperties, PlatformTransactionManager transactionManager) {
+		this.repository = repository;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		int cacheSize = importProperties.getGlossCacheSize();
+		this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	/**
+	 * Sets the gloss id of every link of the given definitions from its word.
+	 */
+	public void assignGlosses(Collection<? extends WordDefinitionEntity> definitions) {
+		List<WordDefinitionLinkEntity> links = definitions.stream()
+			.map(WordDefinitionEntity::getLinks)
+			.filter(Objects::nonNull)
+			.flatMap(Collection::stream)
+			.filter(l -> l.getWord() != null)
+			.toList();
+		Map<String, Long> ids = intern(links.stream()
+			.map(WordDefinitionLinkEntity::getWord)
+			.toList());
+		links.forEach(l -> l.setGlossId(ids.get(l.getWord())));
+	}
+
+	/**
+	 * @return ids of the given words, storing the words not known yet
+	 */
+	public synchronized Map<String, Long> intern(Collection<String> words) {
+		Map<String, Long> ids = new HashMap<>();
+		Set<String> missing = new LinkedHashSet<>();
+		for (String word : words) {
+			Optional.ofNullable(cache.get(word))
+				.ifPresentOrElse(id -> ids.put(word, id), () -> missing.add(word));
+		}
+		if (!missing.isEmpty()) {
+			transactionTemplate.executeWithoutResult(status -> lookupOrInsert(new ArrayList<>(missing), ids));
+			// cached only once committed
+			missing.forEach(word -> cache.put(word, ids.get(word)));
+		}
+		return ids;
+	}
+
+	private void lookupOrInsert(List<String> words, Map<String, Long> ids) {
+		List<GlossEntity> created = new ArrayList<>();
+		for (int i = 0; i < words.size(); i += LOOKUP_BATCH_SIZE) {
+			List<String> batch = words.subList(i, Math.min(words.size(), i + LOOKUP_BATCH_SIZE));
+			Map<String, String> hashes = new HashMap<>();
+			batch.forEach(word -> hashes.put(word, hash(word)));
+			Map<String, Long> found = new HashMap<>();
+			repository.findByWordHashIn(hashes.values()).forEach(g -> found.put(g.getWord(), g.getId()));
+			for (String word : batch) {
+				Long id = found.get(word);
+				if (id != null) {
+					ids.put(word, id);
+				} else {
+					created.add(new GlossEntity(word, hashes.get(word)));
+				}
+			}
+		}
+		repository.saveAll(created).forEach(g -> ids.put(g.getWord(), g.getId()));
+		log.debug("Interned {} new glosses", created.size());
+	}
+
+	static String hash(String word) {
+		try {
+			return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(word.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
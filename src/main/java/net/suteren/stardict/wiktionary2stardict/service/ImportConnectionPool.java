@@ -0,0 +1,44 @@
+package net.suteren.stardict.wiktionary2stardict.service;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Grows the connection pool to what a concurrent import may hold at once. Every worker may hold the connection
+ * of its chunk transaction while it interns glosses ({@link GlossService}), stores a JSON dictionary
+ * ({@link JsonCompressionService}) or creates language partitions in a transaction of its own, which needs a second
+ * connection. With fewer than two connections per worker, the chunk transactions can take the whole pool and wait
+ * for each other until the connection timeout; one more connection is left for the thread running the import.
+ */
+@Slf4j
+@Component public class ImportConnectionPool implements BeanPostProcessor {
+
+	private final Environment environment;
+
+	public ImportConnectionPool(Environment environment) {
+		this.environment = environment;
+	}
+
+	@Override public Object postProcessBeforeInitialization(Object bean, String beanName) {
+		if (bean instanceof HikariDataSource dataSource) {
+			// bound here, the properties bean may not be ready while the data source is created
+			int workers = Binder.get(environment)
+				.bind("wiktionary2stardict.import", ImportProperties.class)
+				.orElseGet(ImportProperties::new)
+				.getWorkers();
+			int required = 2 * Math.max(1, workers) + 1;
+			if (dataSource.getMaximumPoolSize() < required) {
+				log.info("Growing the connection pool from {} to {} connections for {} import workers", dataSource.getMaximumPoolSize(), required,
+					workers);
+				dataSource.setMaximumPoolSize(required);
+			}
+		}
+		return bean;
+	}
+}
@@ -0,0 +1,215 @@
+package net.suteren.stardict.wiktionary2stardict.service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Three stage import pipeline: a reader thread splits lines into chunks, worker threads parse the chunks in parallel
+ * and the calling thread persists the parsed chunks. Chunks are written strictly in the order they were read,
+ * so the result does not depend on the number of workers. At most {@code 2 * workers} chunks are in flight at once.
+ * Every chunk carries the byte offset just past its last line, so the writer can checkpoint its progress.
+ * <p>
+ * Independent parts of a single input (e.g. byte ranges of a huge file) are imported by {@link #runParts}, where every
+ * worker reads and parses its own part and the calling thread persists the chunks as they come.
+ *
+ * @param <T> type of parsed items
+ */
+@Slf4j
+class ImportPipeline<T> {
+
+	private static final Future<?> END = CompletableFuture.completedFuture(null);
+
+	private final int workers;
+	private final int chunkSize;
+
+	ImportPipeline(int workers, int chunkSize) {
+		this.workers = Math.max(1, workers);
+		this.chunkSize = Math.max(1, chunkSize);
+	}
+
+	/**
+	 * Runs the pipeline until the lines are exhausted.
+	 *
+	 * @param lines source of lines, consumed by the reader thread
+	 * @param parser converts a single line to an item, returns {@code null} for lines to skip; called concurrently
+	 * @param writer persists a chunk of parsed items; called on the calling thread for every chunk, even an empty one
+	 * @return number of items passed to the writer
+	 */
+	int run(Iterator<JsonlLine> lines, Function<String, T> parser, Consumer<Chunk<T>> writer) {
+		BlockingQueue<Future<?>> pending = new ArrayBlockingQueue<>(2 * workers);
+		int count = 0;
+		try (ExecutorService executor = Executors.newFixedThreadPool(workers)) {
+			Thread reader = Thread.ofPlatform()
+				.name("import-reader")
+				.daemon()
+				.start(() -> read(lines, parser, executor, pending));
+			try {
+				Future<?> future;
+				while ((future = pending.take()) != END) {
+					@SuppressWarnings("unchecked")
+					Chunk<T> parsed = (Chunk<T>) future.get();
+					writer.accept(parsed);
+					count += parsed.items().size();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while importing", e);
+			} catch (ExecutionException e) {
+				throw rethrow(e.getCause());
+			} finally {
+				reader.interrupt();
+				executor.shutdownNow();
+			}
+		}
+		return count;
+	}
+
+	private void read(Iterator<JsonlLine> lines, Function<String, T> parser, ExecutorService executor, BlockingQueue<Future<?>> pending) {
+		try {
+			try {
+				List<JsonlLine> chunk = new ArrayList<>(chunkSize);
+				while (lines.hasNext()) {
+					chunk.add(lines.next());
+					if (chunk.size() >= chunkSize) {
+						pending.put(submit(chunk, parser, executor));
+						chunk = new ArrayList<>(chunkSize);
+					}
+				}
+				if (!chunk.isEmpty()) {
+					pending.put(submit(chunk, parser, executor));
+				}
+			} catch (InterruptedException e) {
+				throw e;
+			} catch (Throwable e) {
+				// whatever kills the reader has to reach the writer, which would otherwise wait for the end forever
+				pending.put(CompletableFuture.failedFuture(e));
+			}
+			pending.put(END);
+		} catch (InterruptedException e) {
+			log.debug("Import reader interrupted");
+		}
+	}
+
+	private Future<Chunk<T>> submit(List<JsonlLine> chunk, Function<String, T> parser, ExecutorService executor) {
+		long endOffset = chunk.getLast().endOffset();
+		return executor.submit(() -> new Chunk<>(chunk.stream()
+			.map(JsonlLine::text)
+			.map(parser)
+			.filter(Objects::nonNull)
+			.toList(), endOffset));
+	}
+
+	/**
+	 * Unchecked failure to rethrow on the calling thread, errors are rethrown as they are.
+	 */
+	private static RuntimeException rethrow(Throwable failure) {
+		if (failure instanceof Error error) {
+			throw error;
+		}
+		return failure instanceof RuntimeException re ? re : new IllegalStateException(failure);
+	}
+
+	/**
+	 * Reads and parses every part on its own worker thread and persists the parsed chunks on the calling thread.
+	 * Chunks of different parts are interleaved, chunks of one part are written in order.
+	 *
+	 * @param parts line sources, each consumed by a single worker
+	 * @param parser converts a single line to an item, returns {@code null} for lines to skip; called concurrently
+	 * @param endOffset byte offset just past a line, recorded as the end of its chunk
+	 * @param writer persists a chunk of the part with the given index
+	 * @return number of items passed to the writer
+	 */
+	<L> int runParts(List<? extends Iterator<L>> parts, Function<L, T> parser, ToLongFunction<L> endOffset,
+		BiConsumer<Integer, Chunk<T>> writer) {
+		BlockingQueue<PartChunk<T>> parsed = new ArrayBlockingQueue<>(2 * workers);
+		int count = 0;
+		try (ExecutorService executor = Executors.newFixedThreadPool(workers)) {
+			for (int i = 0; i < parts.size(); i++) {
+				int part = i;
+				executor.execute(() -> parsePart(part, parts.get(part), parser, endOffset, parsed));
+			}
+			try {
+				int remaining = parts.size();
+				while (remaining > 0) {
+					PartChunk<T> next = parsed.take();
+					if (next.failure() != null) {
+						throw rethrow(next.failure());
+					} else if (next.chunk() == null) {
+						remaining--;
+					} else {
+						writer.accept(next.part(), next.chunk());
+						count += next.chunk().items().size();
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while importing", e);
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+		return count;
+	}
+
+	private <L> void parsePart(int part, Iterator<L> lines, Function<L, T> parser, ToLongFunction<L> endOffset,
+		BlockingQueue<PartChunk<T>> parsed) {
+		try {
+			try {
+				List<T> items = new ArrayList<>(chunkSize);
+				int read = 0;
+				long offset = -1;
+				while (lines.hasNext()) {
+					L line = lines.next();
+					T item = parser.apply(line);
+					if (item != null) {
+						items.add(item);
+					}
+					offset = endOffset.applyAsLong(line);
+					if (++read >= chunkSize) {
+						parsed.put(new PartChunk<>(part, new Chunk<>(items, offset), null));
+						items = new ArrayList<>(chunkSize);
+						read = 0;
+					}
+				}
+				if (read > 0) {
+					parsed.put(new PartChunk<>(part, new Chunk<>(items, offset), null));
+				}
+				parsed.put(new PartChunk<>(part, null, null));
+			} catch (InterruptedException e) {
+				throw e;
+			} catch (Throwable e) {
+				// without its end marker the writer would wait for the part forever
+				parsed.put(new PartChunk<>(part, null, e));
+			}
+		} catch (InterruptedException e) {
+			log.debug("Import of part {} interrupted", part);
+		}
+	}
+
+	/**
+	 * Parsed items of a chunk and the byte offset just past its last line.
+	 */
+	record Chunk<T>(List<T> items, long endOffset) {
+	}
+
+	/**
+	 * Chunk of a part, {@code null} chunk marks the end of the part or its failure.
+	 */
+	private record PartChunk<T>(int part, Chunk<T> chunk, Throwable failure) {
+	}
+}
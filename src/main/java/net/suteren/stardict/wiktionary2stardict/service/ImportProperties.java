@@ -0,0 +1,65 @@
+package net.suteren.stardict.wiktionary2stardict.service;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import lombok.Getter;
+import lombok.Setter;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.JsonCodec;
+
+/**
+ * Tuning of the JSONL import pipeline.
+ */
+@Getter @Setter
+@ConfigurationProperties(prefix = "wiktionary2stardict.import")
+public class ImportProperties {
+
+	/** Number of threads parsing JSONL lines into entities. */
+	private int workers = Runtime.getRuntime().availableProcessors();
+
+	/** Number of lines handed to a parser thread at once; parsed chunks are persisted in the same batches. */
+	private int chunkSize = 1000;
+
+	/** Number of malformed lines the batch import skips per file before it fails. */
+	private int skipLimit = 1000;
+
+	/**
+	 * Plain JSONL files of at least this size are split into one byte range per worker and the ranges are read
+	 * from a memory mapped file and parsed in parallel.
+	 */
+	private DataSize splitThreshold = DataSize.ofMegabytes(256);
+
+	/** Number of link words whose gloss ids are kept in memory while importing. */
+	private int glossCacheSize = 200_000;
+
+	/** Storage format of the imported JSON; compressed JSON is decompressed transparently by the export and the view. */
+	private JsonCodec jsonCompression = JsonCodec.NONE;
+
+	/**
+	 * Number of entries of a language sampled to build its compression dictionary; entries imported before
+	 * the dictionary exists are compressed without one.
+	 */
+	private int dictionarySamples = 1000;
+
+	/** Maximum size of a trained zstd dictionary. */
+	private DataSize dictionarySize = DataSize.ofKilobytes(112);
+
+	/**
+	 * Partition definitions and links by language on PostgreSQL; an existing database is converted on startup.
+	 * Removing a source that owns whole languages then drops their partitions instead of deleting row by row.
+	 */
+	private boolean partitionByLanguage;
+
+	/** How the pipeline import stores definitions. */
+	private SinkType sink = SinkType.JPA;
+
+	public enum SinkType {
+		/** JPA with JDBC batching; works on every database. */
+		JPA,
+		/**
+		 * Database specific bulk load (PostgreSQL COPY, H2 CSVREAD of staging files) with indexes built after the load;
+		 * falls back to JPA elsewhere.
+		 */
+		BULK
+	}
+}
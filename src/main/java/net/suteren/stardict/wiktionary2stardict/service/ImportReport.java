@@ -0,0 +1,50 @@
+package net.suteren.stardict.wiktionary2stardict.service;
+
+import lombok.Getter;
+
+/**
+ * Outcome of an import: entries inserted, replaced by a changed version, confirmed unchanged
+ * and removed because they vanished from the source.
+ */
+@Getter
+public class ImportReport {
+
+	private long inserted;
+	private long updated;
+	private long unchanged;
+	private long removed;
+
+	public void addInserted(long count) {
+		inserted += count;
+	}
+
+	public void addUpdated(long count) {
+		updated += count;
+	}
+
+	public void addUnchanged(long count) {
+		unchanged += count;
+	}
+
+	public void addRemoved(long count) {
+		removed += count;
+	}
+
+	public void add(ImportReport other) {
+		inserted += other.inserted;
+		updated += other.updated;
+		unchanged += other.unchanged;
+		removed += other.removed;
+	}
+
+	/**
+	 * @return number of entries written
+	 */
+	public long getWritten() {
+		return inserted + updated;
+	}
+
+	@Override public String toString() {
+		return "%d inserted, %d updated, %d unchanged, %d removed".formatted(inserted, updated, unchanged, removed);
+	}
+}
@@ -0,0 +1,133 @@
+package net.suteren.stardict.wiktionary2stardict.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import lombok.extern.slf4j.Slf4j;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.EntryStateEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.WordDefinitionEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.repository.TranslationPairRepository;
+import net.suteren.stardict.wiktionary2stardict.jpa.repository.WordDefinitionRepository;
+import net.suteren.stardict.wiktionary2stardict.sink.DefinitionSink;
+
+/**
+ * Writes the entries of one source incrementally. An entry whose natural key is not stored yet is inserted,
+ * a changed entry replaces its stored version and an unchanged one is only confirmed by the import run.
+ * Once the whole input is written, {@link #removeVanished()} deletes the entries of the source the run did not confirm.
+ * An entry key occurring several times matches as many stored entries as there are.
+ * Translation pairs of the written entries are added along unless disabled, e.g. when the sink defers its indexes
+ * or several writers run concurrently; the pairs are then rebuilt at once after the load. The word lookup index is written
+ * along too, by the sink itself when it loads in bulk. Pairs and word trigrams of replaced and removed entries are deleted
+ * with them by the database.
+ */
+@Slf4j
+public class IncrementalDefinitionWriter {
+
+	private final WordDefinitionRepository repository;
+	private final TranslationPairRepository pairRepository;
+	private final GlossService glossService;
+	private final WordIndexService wordIndexService;
+	private final DefinitionSink sink;
+	private final String source;
+	private final long importRun;
+	private final boolean addingPairs;
+	private final boolean lookup;
+	private final ImportReport report;
+
+	/**
+	 * Must be created within a transaction.
+	 *
+	 * @param addingPairs whether the translation pairs of the written entries are added chunk by chunk
+	 */
+	public IncrementalDefinitionWriter(WordDefinitionRepository repository, TranslationPairRepository pairRepository, GlossService glossService,
+		WordIndexService wordIndexService, DefinitionSink sink, String source, long importRun, boolean addingPairs, ImportReport report) {
+		this.repository = repository;
+		this.pairRepository = pairRepository;
+		this.glossService = glossService;
+		this.wordIndexService = wordIndexService;
+		this.sink = sink;
+		this.source = source;
+		this.importRun = importRun;
+		this.addingPairs = addingPairs;
+		this.report = report;
+		// nothing to compare with for a new source, so its entries are just inserted
+		this.lookup = repository.existsBySource(source);
+	}
+
+	/**
+	 * Writes a chunk; called within a transaction.
+	 */
+	public void write(List<WordDefinitionEntity> definitions) {
+		definitions.forEach(d -> d.setImportRun(importRun));
+		if (!lookup) {
+			writeAll(definitions);
+			report.addInserted(definitions.size());
+			return;
+		}
+		Map<String, Deque<EntryStateEntity>> stored = repository.findEntryStates(source, definitions.stream()
+				.map(WordDefinitionEntity::getEntryKey)
+				.distinct()
+				.toList(), importRun).stream()
+			.collect(Collectors.groupingBy(EntryStateEntity::entryKey, Collectors.toCollection(ArrayDeque::new)));
+		List<WordDefinitionEntity> written = new ArrayList<>(definitions.size());
+		List<Long> unchanged = new ArrayList<>();
+		List<Long> replaced = new ArrayList<>();
+		for (WordDefinitionEntity definition : definitions) {
+			EntryStateEntity state = Optional.ofNullable(stored.get(definition.getEntryKey()))
+				.map(Deque::poll)
+				.orElse(null);
+			if (state == null) {
+				written.add(definition);
+			} else if (state.contentHash() != null && state.contentHash().equals(definition.getContentHash())) {
+				unchanged.add(state.id());
+			} else {
+				replaced.add(state.id());
+				written.add(definition);
+			}
+		}
+		if (!unchanged.isEmpty()) {
+			repository.confirmImportRun(unchanged, importRun);
+		}
+		if (!replaced.isEmpty()) {
+			repository.deleteLinksByDefinitionIds(replaced);
+			repository.deleteByIds(replaced);
+		}
+		writeAll(written);
+		report.addInserted(written.size() - replaced.size());
+		report.addUpdated(replaced.size());
+		report.addUnchanged(unchanged.size());
+	}
+
+	/**
+	 * Deletes the entries of the source which the import run neither wrote nor confirmed; called within a transaction.
+	 */
+	public void removeVanished() {
+		if (!lookup) {
+			return;
+		}
+		repository.deleteVanishedLinks(source, importRun);
+		int removed = repository.deleteVanished(source, importRun);
+		log.info("Removed {} entries of {} which are no longer in the source", removed, source);
+		report.addRemoved(removed);
+	}
+
+	private void writeAll(List<WordDefinitionEntity> definitions) {
+		if (!definitions.isEmpty()) {
+			glossService.assignGlosses(definitions);
+			sink.write(definitions);
+			if (!sink.isIndexingWords()) {
+				wordIndexService.index(definitions);
+			}
+			if (addingPairs) {
+				pairRepository.addPairsOf(definitions.stream()
+					.map(WordDefinitionEntity::getId)
+					.toList());
+			}
+		}
+	}
+}
@@ -0,0 +1,277 @@
+package net.suteren.stardict.wiktionary2stardict.service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.github.luben.zstd.ZstdException;
+
+import lombok.extern.slf4j.Slf4j;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.DefinitionJsonEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.JsonCodec;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.JsonDictionaryEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.WordDefinitionEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.repository.JsonDictionaryRepository;
+import net.suteren.stardict.wiktionary2stardict.jpa.repository.WordDefinitionRepository;
+
+/**
+ * Optional compressed storage of the definition JSON, see {@link ImportProperties#getJsonCompression()}.
+ * Every language gets a dictionary built from the first {@link ImportProperties#getDictionarySamples()} entries
+ * imported with the codec: a trained dictionary for zstd, the tail of the sampled JSON as the preset dictionary
+ * for deflate. Entries compressed before the dictionary exists are compressed without one. A stored dictionary
+ * is reused by later imports. Decompression is transparent to the readers through {@link #json}.
+ */
+@Slf4j
+@Service public class JsonCompressionService {
+
+	private static final int ZSTD_LEVEL = 3;
+	/** Deflate looks back at most 32 KiB, a longer preset dictionary is useless. */
+	private static final int DEFLATE_DICTIONARY_SIZE = 32 * 1024;
+
+	private final ImportProperties properties;
+	private final JsonDictionaryRepository dictionaryRepository;
+	private final TransactionTemplate transactionTemplate;
+	private final Map<String, LanguageDictionary> languages = new ConcurrentHashMap<>();
+	private final Map<Long, Dictionary> dictionaries = new ConcurrentHashMap<>();
+	private final AtomicLong plainBytes = new AtomicLong();
+	private final AtomicLong compressedBytes = new AtomicLong();
+
+	public JsonCompressionService(ImportProperties properties, JsonDictionaryRepository dictionaryRepository,
+		PlatformTransactionManager transactionManager) {
+		this.properties = properties;
+		this.dictionaryRepository = dictionaryRepository;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+	}
+
+	/**
+	 * Replaces the plain JSON of a parsed definition by its compressed form when compression is enabled.
+	 * Thread safe, called by the parser threads.
+	 */
+	public void compress(WordDefinitionEntity definition) {
+		JsonCodec codec = properties.getJsonCompression();
+		if (codec == null || codec == JsonCodec.NONE || definition.getJson() == null) {
+			return;
+		}
+		byte[] plain = definition.getJson().getBytes(StandardCharsets.UTF_8);
+		Dictionary dictionary = languages.computeIfAbsent(codec + ":" + definition.getLanguage(),
+				key -> new LanguageDictionary(codec, definition.getLanguage()))
+			.dictionary(plain);
+		byte[] compressed = encode(codec, dictionary, plain);
+		definition.setJsonCodec(codec);
+		definition.setJsonDictionaryId(dictionary != null ? dictionary.id() : null);
+		definition.setJsonData(compressed);
+		definition.setJson(null);
+		plainBytes.addAndGet(plain.length);
+		compressedBytes.addAndGet(compressed.length);
+	}
+
+	public String json(WordDefinitionEntity definition) {
+		return json(definition.getJson(), definition.getJsonCodec(), definition.getJsonDictionaryId(), definition.getJsonData());
+	}
+
+	public String json(DefinitionJsonEntity definition) {
+		return json(definition.json(), definition.jsonCodec(), definition.jsonDictionaryId(), definition.jsonData());
+	}
+
+	private String json(String json, JsonCodec codec, Long dictionaryId, byte[] data) {
+		if (codec == null || codec == JsonCodec.NONE || data == null) {
+			return json;
+		}
+		Dictionary dictionary = Optional.ofNullable(dictionaryId)
+			.map(id -> dictionaries.computeIfAbsent(id, this::loadDictionary))
+			.orElse(null);
+		return new String(decode(codec, dictionary, data), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Logs how much the JSON compressed since the last call.
+	 */
+	public void logStatistics() {
+		long plain = plainBytes.getAndSet(0);
+		long compressed = compressedBytes.getAndSet(0);
+		if (plain > 0) {
+			log.info("Compressed {} MiB of JSON to {} MiB ({}%)", plain >> 20, compressed >> 20, 100 * compressed / plain);
+		}
+	}
+
+	private Dictionary loadDictionary(Long id) {
+		return dictionaryRepository.findById(id)
+			.map(Dictionary::of)
+			.orElseThrow(() -> new IllegalStateException("Missing JSON dictionary " + id));
+	}
+
+	private static byte[] encode(JsonCodec codec, Dictionary dictionary, byte[] plain) {
+		return switch (codec) {
+			case ZSTD -> dictionary != null ? Zstd.compress(plain, dictionary.zstdCompress()) : Zstd.compress(plain, ZSTD_LEVEL);
+			case DEFLATE -> deflate(plain, dictionary);
+			case NONE -> plain;
+		};
+	}
+
+	private static byte[] decode(JsonCodec codec, Dictionary dictionary, byte[] data) {
+		return switch (codec) {
+			case ZSTD -> {
+				int size = Math.toIntExact(Zstd.getFrameContentSize(data));
+				yield dictionary != null ? Zstd.decompress(data, dictionary.zstdDecompress(), size) : Zstd.decompress(data, size);
+			}
+			case DEFLATE -> inflate(data, dictionary);
+			case NONE -> data;
+		};
+	}
+
+	private static byte[] deflate(byte[] plain, Dictionary dictionary) {
+		Deflater deflater = new Deflater();
+		try {
+			if (dictionary != null) {
+				deflater.setDictionary(dictionary.data());
+			}
+			deflater.setInput(plain);
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream(plain.length / 4 + 64);
+			byte[] buffer = new byte[8192];
+			while (!deflater.finished()) {
+				out.write(buffer, 0, deflater.deflate(buffer));
+			}
+			return out.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static byte[] inflate(byte[] data, Dictionary dictionary) {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(data);
+			ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+			byte[] buffer = new byte[8192];
+			while (!inflater.finished()) {
+				int n = inflater.inflate(buffer);
+				if (n == 0 && inflater.needsDictionary()) {
+					if (dictionary == null) {
+						throw new IllegalStateException("Deflated JSON needs a dictionary");
+					}
+					inflater.setDictionary(dictionary.data());
+				} else if (n == 0 && inflater.needsInput()) {
+					throw new IllegalStateException("Truncated deflated JSON");
+				}
+				out.write(buffer, 0, n);
+			}
+			return out.toByteArray();
+		} catch (DataFormatException e) {
+			throw new IllegalStateException("Corrupted deflated JSON", e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Dictionary with the zstd contexts digested from it, which are expensive to build and safe to share.
+	 */
+	private record Dictionary(Long id, byte[] data, ZstdDictCompress zstdCompress, ZstdDictDecompress zstdDecompress) {
+
+		static Dictionary of(JsonDictionaryEntity entity) {
+			boolean zstd = entity.getCodec() == JsonCodec.ZSTD;
+			return new Dictionary(entity.getId(), entity.getData(),
+				zstd ? new ZstdDictCompress(entity.getData(), ZSTD_LEVEL) : null,
+				zstd ? new ZstdDictDecompress(entity.getData()) : null);
+		}
+	}
+
+	/**
+	 * Dictionary of one language: looked up among the stored ones first, otherwise collects samples until
+	 * it can be built and stored.
+	 */
+	private class LanguageDictionary {
+
+		private final JsonCodec codec;
+		private final String language;
+		private List<byte[]> samples;
+		private Dictionary dictionary;
+		private boolean done;
+
+		LanguageDictionary(JsonCodec codec, String language) {
+			this.codec = codec;
+			this.language = language;
+		}
+
+		synchronized Dictionary dictionary(byte[] sample) {
+			if (done) {
+				return dictionary;
+			}
+			if (samples == null) {
+				Optional<JsonDictionaryEntity> stored = dictionaryRepository.findFirstByLanguageAndCodecOrderByIdDesc(language, codec);
+				if (stored.isPresent()) {
+					return use(Dictionary.of(stored.get()));
+				}
+				samples = new ArrayList<>(properties.getDictionarySamples());
+			}
+			samples.add(sample);
+			if (samples.size() >= properties.getDictionarySamples()) {
+				byte[] data = build();
+				samples = null;
+				if (data == null) {
+					return use(null);
+				}
+				JsonDictionaryEntity entity = new JsonDictionaryEntity();
+				entity.setLanguage(language);
+				entity.setCodec(codec);
+				entity.setSamples(properties.getDictionarySamples());
+				entity.setCreated(Instant.now());
+				entity.setData(data);
+				// committed right away on a connection of its own (see ImportConnectionPool), the definitions referring
+				// to it may be written by any later transaction
+				JsonDictionaryEntity saved = transactionTemplate.execute(status -> dictionaryRepository.save(entity));
+				log.info("Built a {} KiB {} dictionary for {}", data.length >> 10, codec, language);
+				Dictionary built = Dictionary.of(saved);
+				dictionaries.put(built.id(), built);
+				return use(built);
+			}
+			return null;
+		}
+
+		private Dictionary use(Dictionary dictionary) {
+			this.dictionary = dictionary;
+			this.done = true;
+			return dictionary;
+		}
+
+		private byte[] build() {
+			if (codec == JsonCodec.DEFLATE) {
+				ByteArrayOutputStream tail = new ByteArrayOutputStream();
+				samples.forEach(tail::writeBytes);
+				byte[] all = tail.toByteArray();
+				return Arrays.copyOfRange(all, Math.max(0, all.length - DEFLATE_DICTIONARY_SIZE), all.length);
+			}
+			long total = samples.stream().mapToLong(s -> s.length).sum();
+			ZstdDictTrainer trainer = new ZstdDictTrainer(Math.toIntExact(Math.min(total, Integer.MAX_VALUE - 8)),
+				Math.toIntExact(properties.getDictionarySize().toBytes()));
+			samples.forEach(trainer::addSample);
+			try {
+				return trainer.trainSamples();
+			} catch (ZstdException e) {
+				log.warn("Failed to train a zstd dictionary for {}, compressing without: {}", language, e.getMessage());
+				return null;
+			}
+		}
+	}
+}
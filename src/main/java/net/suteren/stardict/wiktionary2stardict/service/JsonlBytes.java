@@ -0,0 +1,7 @@
+package net.suteren.stardict.wiktionary2stardict.service;
+
+/**
+ * Single JSONL line as raw UTF-8 bytes together with the byte offset just past its line terminator.
+ */
+record JsonlBytes(byte[] bytes, long endOffset) {
+}
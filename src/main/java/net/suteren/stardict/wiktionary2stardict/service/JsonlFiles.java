@@ -0,0 +1,82 @@
+package net.suteren.stardict.wiktionary2stardict.service;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+
+/**
+ * Naming conventions of Kaikki JSONL dumps and access to plain or compressed ({@code .gz}, {@code .bz2},
+ * {@code .zst}, {@code .xz}) dumps.
+ */
+public final class JsonlFiles {
+
+	private static final Pattern JSONL_PATTERN = Pattern.compile("^.*\\.jsonl(?:\\.(?:gz|bz2|zst|xz))?$");
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private JsonlFiles() {}
+
+	public static boolean isJsonl(String fileName) {
+		return JSONL_PATTERN.matcher(fileName).matches();
+	}
+
+	public static boolean isCompressed(String fileName) {
+		return !fileName.endsWith(".jsonl");
+	}
+
+	/**
+	 * Source label of a dump, e.g. {@code Czech} for {@code kaikki.org-dictionary-Czech.jsonl.gz}.
+	 */
+	public static String getSourceLabel(String fileName) {
+		return fileName.replaceAll("^kaikki.org-dictionary-(.*)\\.jsonl(?:\\.(?:gz|bz2|zst|xz))?$", "$1");
+	}
+
+	/**
+	 * Opens a dump positioned at the given offset of its uncompressed content. Plain files seek directly,
+	 * compressed ones are decompressed on a read-ahead thread and skipped up to the offset.
+	 */
+	public static InputStream open(Path file, long offset) throws IOException {
+		String name = file.getFileName().toString();
+		FileInputStream in = new FileInputStream(file.toFile());
+		try {
+			if (!isCompressed(name)) {
+				in.getChannel().position(offset);
+				return in;
+			}
+			InputStream decompressed = decompress(new BufferedInputStream(in, BUFFER_SIZE), name);
+			decompressed.skipNBytes(offset);
+			return decompressed;
+		} catch (IOException | RuntimeException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Wraps a stream of a dump with the given name into a decompressing stream according to its extension.
+	 * Decompression runs on a read-ahead thread, in parallel with the consumer.
+	 */
+	public static InputStream decompress(InputStream in, String fileName) throws IOException {
+		InputStream decompressed;
+		if (fileName.endsWith(".gz")) {
+			// handles multi-member archives produced by pigz or bgzip as well
+			decompressed = new GZIPInputStream(in, BUFFER_SIZE);
+		} else if (fileName.endsWith(".bz2")) {
+			decompressed = new BZip2CompressorInputStream(in, true);
+		} else if (fileName.endsWith(".zst")) {
+			decompressed = new ZstdCompressorInputStream(in);
+		} else if (fileName.endsWith(".xz")) {
+			decompressed = new XZCompressorInputStream(in, true);
+		} else {
+			return in;
+		}
+		return new ReadAheadInputStream(decompressed, fileName);
+	}
+}
@@ -0,0 +1,7 @@
+package net.suteren.stardict.wiktionary2stardict.service;
+
+/**
+ * Single JSONL line together with the byte offset just past its line terminator.
+ */
+public record JsonlLine(String text, long endOffset) {
+}
@@ -0,0 +1,107 @@
+package net.suteren.stardict.wiktionary2stardict.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Reads JSONL lines from a stream on a dedicated thread and hands them over through a bounded queue,
+ * so reading (typically from the network) overlaps with parsing and persisting done by the consumer.
+ * The producer blocks once the queue is full, which keeps the memory bounded.
+ */
+@Slf4j
+class JsonlLineQueue implements Iterator<JsonlLine>, AutoCloseable {
+
+	private static final JsonlLine END = new JsonlLine("", -1);
+
+	private final BlockingQueue<JsonlLine> queue;
+	private final InputStream inputStream;
+	private final long startOffset;
+	private final Thread producer;
+	private volatile Throwable failure;
+	private JsonlLine next;
+	private boolean finished;
+
+	/**
+	 * @param inputStream stream positioned at {@code startOffset}
+	 * @param startOffset offset of the first byte of the stream within the whole dump
+	 */
+	JsonlLineQueue(InputStream inputStream, long startOffset, int capacity, String name) {
+		this.inputStream = inputStream;
+		this.startOffset = startOffset;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		this.producer = Thread.ofPlatform()
+			.name("jsonl-reader-" + name)
+			.daemon()
+			.start(this::produce);
+	}
+
+	private void produce() {
+		try (JsonlLineReader reader = new JsonlLineReader(inputStream, startOffset)) {
+			while (reader.hasNext()) {
+				queue.put(reader.next());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		} catch (Throwable e) {
+			failure = e;
+		}
+		try {
+			queue.put(END);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override public boolean hasNext() {
+		if (next != null) {
+			return true;
+		}
+		if (finished) {
+			return false;
+		}
+		try {
+			JsonlLine line = queue.take();
+			if (line == END) {
+				finished = true;
+				if (failure != null) {
+					throw failure instanceof IOException io ? new UncheckedIOException(io)
+						: failure instanceof UncheckedIOException unchecked ? unchecked : new IllegalStateException(failure);
+				}
+				return false;
+			}
+			next = line;
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for JSONL lines", e);
+		}
+	}
+
+	@Override public JsonlLine next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		JsonlLine line = next;
+		next = null;
+		return line;
+	}
+
+	@Override public void close() {
+		if (producer.isAlive()) {
+			producer.interrupt();
+			try {
+				inputStream.close();
+			} catch (IOException e) {
+				log.debug("Failed to close JSONL input: {}", e.getMessage());
+			}
+		}
+	}
+}
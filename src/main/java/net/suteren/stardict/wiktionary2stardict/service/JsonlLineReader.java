@@ -0,0 +1,108 @@
+package net.suteren.stardict.wiktionary2stardict.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Splits a UTF-8 stream into lines on raw bytes and keeps track of the byte offset of every line,
+ * so an import can record exactly where it stopped and continue from there later.
+ */
+public class JsonlLineReader implements Iterator<JsonlLine>, Closeable {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final InputStream inputStream;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int position;
+	private int limit;
+	private boolean eof;
+	private byte[] line = new byte[1024];
+	private int lineLength;
+	private long offset;
+	private JsonlLine next;
+
+	/**
+	 * @param inputStream stream positioned at {@code startOffset}
+	 * @param startOffset offset of the first byte of the stream within the whole file
+	 */
+	public JsonlLineReader(InputStream inputStream, long startOffset) {
+		this.inputStream = inputStream;
+		this.offset = startOffset;
+	}
+
+	@Override public boolean hasNext() {
+		if (next == null) {
+			try {
+				next = readLine();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return next != null;
+	}
+
+	@Override public JsonlLine next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		JsonlLine result = next;
+		next = null;
+		return result;
+	}
+
+	private JsonlLine readLine() throws IOException {
+		lineLength = 0;
+		while (true) {
+			if (position >= limit) {
+				if (eof || !fill()) {
+					return lineLength > 0 ? toLine() : null;
+				}
+			}
+			int start = position;
+			while (position < limit && buffer[position] != '\n') {
+				position++;
+			}
+			append(start, position - start);
+			offset += position - start;
+			if (position < limit) {
+				position++;
+				offset++;
+				return toLine();
+			}
+		}
+	}
+
+	private boolean fill() throws IOException {
+		int read = inputStream.read(buffer, 0, buffer.length);
+		if (read < 0) {
+			eof = true;
+			return false;
+		}
+		position = 0;
+		limit = read;
+		return true;
+	}
+
+	private void append(int start, int length) {
+		if (lineLength + length > line.length) {
+			line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+		}
+		System.arraycopy(buffer, start, line, lineLength, length);
+		lineLength += length;
+	}
+
+	private JsonlLine toLine() {
+		int length = lineLength > 0 && line[lineLength - 1] == '\r' ? lineLength - 1 : lineLength;
+		return new JsonlLine(new String(line, 0, length, StandardCharsets.UTF_8), offset);
+	}
+
+	@Override public void close() throws IOException {
+		inputStream.close();
+	}
+}
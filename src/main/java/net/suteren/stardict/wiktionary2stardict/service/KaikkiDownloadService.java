@@ -0,0 +1,394 @@
+package net.suteren.stardict.wiktionary2stardict.service;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.stereotype.Service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Streams Kaikki dumps to disk with a fixed-size buffer, so the heap usage does not depend on the dump size.
+ * Interrupted transfers are resumed with HTTP range requests from the already downloaded part after an exponential
+ * backoff. Existing downloads can be revalidated with conditional requests. Downloads are safe to run concurrently,
+ * e.g. from virtual threads.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service public class KaikkiDownloadService {
+
+	private static final String PART_SUFFIX = ".part";
+	private static final String VALIDATORS_SUFFIX = ".validators";
+	private static final String ETAG = "etag";
+	private static final String LAST_MODIFIED = "last-modified";
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final Pattern CONTENT_RANGE_PATTERN = Pattern.compile("^bytes\\s+(\\d+)-\\d+/(?:\\d+|\\*)$");
+
+	private final DownloadProperties properties;
+	private final HttpClient httpClient = HttpClient.newBuilder()
+		.followRedirects(HttpClient.Redirect.NORMAL)
+		.build();
+
+	/**
+	 * Downloads the given URI into the target file. Data are written into a sibling {@code .part} file first
+	 * which is renamed to the target once the transfer is complete. An existing {@code .part} file is resumed.
+	 *
+	 * @return number of bytes of the complete file
+	 */
+	public long download(URI uri, File target) throws IOException, InterruptedException {
+		return download(uri, target, Validators.NONE).size();
+	}
+
+	/**
+	 * Downloads the given URI into the target file unless the existing target is still current: with validators
+	 * of the target, the request is conditional and a {@code 304 Not Modified} response leaves the target untouched.
+	 * A resumed {@code .part} file is only continued while the resource still matches the validators it was started with.
+	 */
+	public DownloadResult download(URI uri, File target, Validators validators) throws IOException, InterruptedException {
+		File part = new File(target.getPath() + PART_SUFFIX);
+		Validators conditional = target.isFile() ? validators : Validators.NONE;
+		int maxAttempts = Math.max(1, properties.getMaxAttempts());
+		for (int attempt = 1; ; attempt++) {
+			try {
+				DownloadResult result = transfer(uri, part, target, conditional);
+				if (result.modified()) {
+					Files.move(part.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+					Files.deleteIfExists(validatorsFile(part).toPath());
+				}
+				return result;
+			} catch (FileNotFoundException e) {
+				throw e;
+			} catch (IOException e) {
+				if (attempt >= maxAttempts) {
+					throw e;
+				}
+				log.warn("Download of {} interrupted at {} bytes (attempt {}/{}): {}", uri, part.length(), attempt, maxAttempts, e.getMessage());
+				Thread.sleep(backoff(attempt));
+			}
+		}
+	}
+
+	/**
+	 * Opens the given URI as a stream starting at the given byte offset of the content identified by the validators.
+	 * The range is requested with {@code If-Range}, so a resource changed since, or one without validators to check,
+	 * is streamed from the start instead; {@link DownloadStream#offset()} tells where the stream actually starts.
+	 * When the connection breaks, the stream transparently reconnects with a range request continuing at the last byte
+	 * handed out, as long as the resource is unchanged, so a consumer can parse the dump while it is still downloading.
+	 */
+	public DownloadStream open(URI uri, long offset, Validators validators) throws IOException, InterruptedException {
+		return new DownloadStream(uri, offset, validators);
+	}
+
+	private DownloadResult transfer(URI uri, File part, File target, Validators conditional) throws IOException, InterruptedException {
+		long offset = part.isFile() ? part.length() : 0;
+		Validators partValidators = offset > 0 ? readValidators(part) : Validators.NONE;
+		HttpRequest.Builder request = newRequestBuilder(uri, offset);
+		if (offset > 0) {
+			partValidators.ifRange().ifPresent(value -> request.header("If-Range", value));
+		} else {
+			Optional.ofNullable(conditional.etag()).ifPresent(value -> request.header("If-None-Match", value));
+			Optional.ofNullable(conditional.lastModified()).ifPresent(value -> request.header("If-Modified-Since", value));
+		}
+		HttpResponse<InputStream> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+		Validators validators;
+		try (InputStream in = response.body()) {
+			boolean append;
+			switch (response.statusCode()) {
+				case 200 -> {
+					append = false;
+					validators = Validators.of(response);
+					writeValidators(part, validators);
+				}
+				case 304 -> {
+					log.info("{} is not modified", uri);
+					return new DownloadResult(false, target.length(), conditional);
+				}
+				case 206 -> {
+					append = true;
+					validators = Validators.of(response).or(partValidators);
+					long start = response.headers().firstValue("Content-Range")
+						.map(CONTENT_RANGE_PATTERN::matcher)
+						.filter(Matcher::matches)
+						.map(m -> Long.parseLong(m.group(1)))
+						.orElse(-1L);
+					if (start != offset) {
+						Files.deleteIfExists(part.toPath());
+						throw new IOException("Unexpected Content-Range for " + uri + ": expected start " + offset + ", got " + start);
+					}
+				}
+				case 416 -> {
+					// Requested range starts at the end of the resource, so the part file is already complete.
+					return new DownloadResult(true, offset, partValidators);
+				}
+				default -> throw failure(uri, response.statusCode());
+			}
+			if (append) {
+				log.info("Resuming download of {} at {} bytes", uri, offset);
+			}
+			OptionalLong length = response.headers().firstValueAsLong("Content-Length");
+			Progress progress = new Progress(uri, offset, length.isPresent() ? offset + length.getAsLong() : -1);
+			try (OutputStream out = new FileOutputStream(part, append)) {
+				byte[] buffer = new byte[BUFFER_SIZE];
+				int read;
+				while ((read = in.read(buffer)) >= 0) {
+					out.write(buffer, 0, read);
+					progress.add(read);
+				}
+			}
+			progress.done();
+		}
+		return new DownloadResult(true, part.length(), validators);
+	}
+
+	private static File validatorsFile(File part) {
+		return new File(part.getPath() + VALIDATORS_SUFFIX);
+	}
+
+	private static Validators readValidators(File part) throws IOException {
+		File file = validatorsFile(part);
+		if (!file.isFile()) {
+			return Validators.NONE;
+		}
+		Properties properties = new Properties();
+		try (InputStream in = new FileInputStream(file)) {
+			properties.load(in);
+		}
+		return new Validators(properties.getProperty(ETAG), properties.getProperty(LAST_MODIFIED));
+	}
+
+	private static void writeValidators(File part, Validators validators) throws IOException {
+		Properties properties = new Properties();
+		Optional.ofNullable(validators.etag()).ifPresent(value -> properties.setProperty(ETAG, value));
+		Optional.ofNullable(validators.lastModified()).ifPresent(value -> properties.setProperty(LAST_MODIFIED, value));
+		try (OutputStream out = new FileOutputStream(validatorsFile(part))) {
+			properties.store(out, null);
+		}
+	}
+
+	private HttpResponse<InputStream> connect(URI uri, long offset, Validators validators) throws IOException, InterruptedException {
+		HttpRequest.Builder request = newRequestBuilder(uri, offset);
+		if (offset > 0) {
+			validators.ifRange().ifPresent(value -> request.header("If-Range", value));
+		}
+		return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+	}
+
+	private static InputStream body(URI uri, HttpResponse<InputStream> response, long offset) throws IOException {
+		int expectedStatus = offset > 0 ? 206 : 200;
+		if (response.statusCode() != expectedStatus) {
+			response.body().close();
+			throw failure(uri, response.statusCode());
+		}
+		return response.body();
+	}
+
+	private static IOException failure(URI uri, int statusCode) {
+		String message = "Failed to download from " + uri + ": HTTP " + statusCode;
+		// a missing dump does not appear by retrying
+		return statusCode == 404 ? new FileNotFoundException(message) : new IOException(message);
+	}
+
+	/**
+	 * @return delay after the given failed attempt, doubled with every attempt up to the configured maximum
+	 */
+	private Duration backoff(int attempt) {
+		Duration delay = properties.getBackoff().multipliedBy(1L << Math.min(attempt - 1, 20));
+		return delay.compareTo(properties.getMaxBackoff()) > 0 ? properties.getMaxBackoff() : delay;
+	}
+
+	/**
+	 * Logs the transferred amount and rate of a download every {@link DownloadProperties#getProgressInterval()}.
+	 */
+	private class Progress {
+
+		private final URI uri;
+		private final long startOffset;
+		private final long total;
+		private final long started = System.nanoTime();
+		private long position;
+		private long lastLogged = started;
+
+		private Progress(URI uri, long offset, long total) {
+			this.uri = uri;
+			this.startOffset = offset;
+			this.position = offset;
+			this.total = total;
+		}
+
+		private void add(int bytes) {
+			position += bytes;
+			long now = System.nanoTime();
+			if (now - lastLogged >= properties.getProgressInterval().toNanos()) {
+				lastLogged = now;
+				log.info("Downloading {}: {} MiB{} at {} KiB/s", uri, position >> 20, total > 0 ? " of " + (total >> 20) + " MiB" : "", rate(now));
+			}
+		}
+
+		private void done() {
+			log.info("Downloaded {}: {} MiB at {} KiB/s", uri, position >> 20, rate(System.nanoTime()));
+		}
+
+		private long rate(long now) {
+			long elapsed = Math.max(1, now - started);
+			return (position - startOffset) * 1_000_000_000L / elapsed >> 10;
+		}
+	}
+
+	private HttpRequest.Builder newRequestBuilder(URI uri, long offset) {
+		HttpRequest.Builder builder = HttpRequest.newBuilder()
+			.uri(uri)
+			.header("User-Agent", "wiktionary2stardict/" + getClass().getPackage().getImplementationVersion());
+		if (offset > 0) {
+			builder.header("Range", "bytes=" + offset + "-");
+		}
+		return builder;
+	}
+
+	/**
+	 * Validators of a downloaded resource, either may be {@code null}.
+	 */
+	public record Validators(String etag, String lastModified) {
+
+		public static final Validators NONE = new Validators(null, null);
+
+		static Validators of(HttpResponse<?> response) {
+			return new Validators(response.headers().firstValue("ETag").orElse(null),
+				response.headers().firstValue("Last-Modified").orElse(null));
+		}
+
+		boolean isEmpty() {
+			return etag == null && lastModified == null;
+		}
+
+		Validators or(Validators other) {
+			return isEmpty() ? other : this;
+		}
+
+		/**
+		 * @return validator for an {@code If-Range} header, which accepts only a strong ETag or a date
+		 */
+		Optional<String> ifRange() {
+			return etag != null && !etag.startsWith("W/") ? Optional.of(etag) : Optional.ofNullable(lastModified);
+		}
+
+		/**
+		 * Whether both identify the same content by the validator an {@code If-Range} would compare.
+		 */
+		public boolean isSameContent(Validators other) {
+			return ifRange().isPresent() && ifRange().equals(other.ifRange());
+		}
+	}
+
+	/**
+	 * @param modified whether the target was (re)downloaded, {@code false} when the existing target is current
+	 * @param size size of the target
+	 * @param validators validators of the target content
+	 */
+	public record DownloadResult(boolean modified, long size, Validators validators) {
+	}
+
+	/**
+	 * Download streamed from {@link #offset()} of the content identified by {@link #validators()}.
+	 */
+	public class DownloadStream extends InputStream {
+
+		private final URI uri;
+		private final long offset;
+		private final Validators validators;
+		private InputStream delegate;
+		private long position;
+		private int attempts = 1;
+
+		private DownloadStream(URI uri, long offset, Validators expected) throws IOException, InterruptedException {
+			this.uri = uri;
+			long start = offset;
+			if (start > 0 && expected.ifRange().isEmpty()) {
+				log.info("No validators to resume {} at {} bytes, downloading from the start", uri, offset);
+				start = 0;
+			}
+			HttpResponse<InputStream> response = connect(uri, start, expected);
+			if (start > 0 && response.statusCode() == 200) {
+				log.info("{} changed since {} bytes of it were imported, downloading from the start", uri, offset);
+				start = 0;
+			}
+			this.offset = start;
+			this.position = start;
+			this.validators = Validators.of(response).or(start > 0 ? expected : Validators.NONE);
+			this.delegate = body(uri, response, start);
+		}
+
+		/**
+		 * @return byte offset of the content the stream starts at
+		 */
+		public long offset() {
+			return offset;
+		}
+
+		/**
+		 * @return validators of the streamed content
+		 */
+		public Validators validators() {
+			return validators;
+		}
+
+		@Override public int read() throws IOException {
+			byte[] single = new byte[1];
+			int read = read(single, 0, 1);
+			return read < 0 ? -1 : single[0] & 0xff;
+		}
+
+		@Override public int read(byte[] b, int off, int len) throws IOException {
+			while (true) {
+				try {
+					int read = delegate.read(b, off, len);
+					if (read > 0) {
+						position += read;
+					}
+					return read;
+				} catch (IOException e) {
+					int maxAttempts = Math.max(1, properties.getMaxAttempts());
+					if (attempts >= maxAttempts) {
+						throw e;
+					}
+					log.warn("Download of {} interrupted at {} bytes (attempt {}/{}): {}", uri, position, attempts, maxAttempts, e.getMessage());
+					delegate.close();
+					try {
+						Thread.sleep(backoff(attempts));
+						attempts++;
+						HttpResponse<InputStream> response = connect(uri, position, validators);
+						if (response.statusCode() == 200) {
+							response.body().close();
+							throw new IOException(uri + " changed while downloading, cannot resume at " + position + " bytes");
+						}
+						delegate = body(uri, response, position);
+					} catch (InterruptedException ie) {
+						Thread.currentThread().interrupt();
+						throw new IOException("Interrupted while resuming " + uri, ie);
+					}
+				}
+			}
+		}
+
+		@Override public void close() throws IOException {
+			delegate.close();
+		}
+	}
+}
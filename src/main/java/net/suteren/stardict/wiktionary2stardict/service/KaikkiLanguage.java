@@ -0,0 +1,11 @@
+package net.suteren.stardict.wiktionary2stardict.service;
+
+/**
+ * Language offered by Kaikki.
+ *
+ * @param name language name as listed by Kaikki
+ * @param path directory of the language under {@code https://kaikki.org/dictionary/}
+ * @param senses number of senses, {@code null} when not listed
+ */
+public record KaikkiLanguage(String name, String path, Integer senses) {
+}
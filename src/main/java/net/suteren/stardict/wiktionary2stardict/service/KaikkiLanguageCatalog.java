@@ -0,0 +1,143 @@
+package net.suteren.stardict.wiktionary2stardict.service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Catalogue of the languages available on Kaikki, parsed from https://kaikki.org/dictionary/ and kept in a local file
+ * next to the download cache. The page is fetched again only once the file is older than
+ * {@link DownloadProperties#getCatalogTtl()}; when Kaikki cannot be reached, a stale catalogue is used,
+ * so listing and resolving languages works offline.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service public class KaikkiLanguageCatalog {
+
+	static final URI KAIKKI_DICTIONARY_ROOT = URI.create("https://kaikki.org/dictionary/");
+	private static final String CATALOG_FILE = "languages.json";
+	private static final Pattern LANG_PATTERN = Pattern.compile("(.*\\S)\\s*\\(\\s*(\\d+)\\s*(?:senses\\s*)?\\)\\s*$");
+	private static final Pattern LANG_URL_PATTERN = Pattern.compile("^/dictionary/([^/]+)(?:/(?:index.html)?)?$");
+
+	private final DownloadProperties properties;
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final HttpClient httpClient = HttpClient.newBuilder()
+		.followRedirects(HttpClient.Redirect.NORMAL)
+		.build();
+
+	/**
+	 * @return the languages, from the local catalogue while it is fresh
+	 */
+	public synchronized List<KaikkiLanguage> languages() throws IOException, InterruptedException {
+		Path file = properties.getCacheDirectory().resolve(CATALOG_FILE);
+		boolean exists = Files.isRegularFile(file);
+		if (exists && Files.getLastModifiedTime(file).toInstant().plus(properties.getCatalogTtl()).isAfter(Instant.now())) {
+			return read(file);
+		}
+		List<KaikkiLanguage> languages;
+		try {
+			languages = fetch();
+		} catch (IOException e) {
+			if (!exists) {
+				throw e;
+			}
+			log.warn("Failed to refresh the Kaikki languages, using the catalogue from {}: {}",
+				Files.getLastModifiedTime(file), e.getMessage());
+			return read(file);
+		}
+		Files.createDirectories(file.getParent());
+		mapper.writeValue(file.toFile(), languages);
+		return languages;
+	}
+
+	/**
+	 * Looks a language up by its name or directory, ignoring case, spaces, hyphens and apostrophes.
+	 *
+	 * @return the language or empty when the catalogue does not know it
+	 */
+	public Optional<KaikkiLanguage> find(String language) throws IOException, InterruptedException {
+		String key = normalize(language);
+		return languages().stream()
+			.filter(l -> key.equals(normalize(l.name())) || key.equals(normalize(l.path())))
+			.findFirst();
+	}
+
+	private List<KaikkiLanguage> read(Path file) throws IOException {
+		return mapper.readValue(file.toFile(), new TypeReference<>() {});
+	}
+
+	private List<KaikkiLanguage> fetch() throws IOException, InterruptedException {
+		HttpRequest request = HttpRequest.newBuilder()
+			.uri(KAIKKI_DICTIONARY_ROOT)
+			.timeout(Duration.ofMinutes(1))
+			.header("User-Agent", "wiktionary2stardict/" + getClass().getPackage().getImplementationVersion())
+			.build();
+		HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+		if (response.statusCode() != 200) {
+			throw new IOException("Failed to load languages from " + KAIKKI_DICTIONARY_ROOT + ": HTTP " + response.statusCode());
+		}
+		List<KaikkiLanguage> languages = parse(response.body());
+		log.info("Loaded {} languages from {}", languages.size(), KAIKKI_DICTIONARY_ROOT);
+		return languages;
+	}
+
+	static List<KaikkiLanguage> parse(String html) {
+		// Parse with Jsoup using the dictionary root as the base URL
+		Document doc = Jsoup.parse(html, KAIKKI_DICTIONARY_ROOT.toString());
+		Map<String, KaikkiLanguage> languages = new LinkedHashMap<>();
+		for (Element a : doc.select("li a[href]")) {
+			String path = getPath(a.attr("abs:href"));
+			if (path == null)
+				continue;
+			Matcher m = LANG_PATTERN.matcher(a.text());
+			KaikkiLanguage language = m.matches()
+				? new KaikkiLanguage(m.group(1), path, Integer.valueOf(m.group(2)))
+				: new KaikkiLanguage(a.text().strip(), path, null);
+			languages.putIfAbsent(path, language);
+		}
+		return new ArrayList<>(languages.values());
+	}
+
+	private static String getPath(String absHref) {
+		if (absHref.isBlank())
+			return null;
+		try {
+			return Optional.ofNullable(URI.create(absHref).getPath())
+				.map(LANG_URL_PATTERN::matcher)
+				.filter(Matcher::matches)
+				.map(m -> m.group(1))
+				.orElse(null);
+		} catch (IllegalArgumentException ignored) {
+			return null;
+		}
+	}
+
+	private static String normalize(String language) {
+		return language == null ? "" : language.strip().replace(" ", "").replace("-", "").replace("'", "").toLowerCase();
+	}
+}
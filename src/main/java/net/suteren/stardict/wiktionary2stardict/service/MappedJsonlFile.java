@@ -0,0 +1,166 @@
+package net.suteren.stardict.wiktionary2stardict.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Plain JSONL file read through memory mapped windows of a {@link FileChannel}. The file is split into byte ranges
+ * aligned to line boundaries, so every range can be read and parsed by its own worker. Lines are handed out
+ * as raw UTF-8 bytes, decoding is left to the parser.
+ */
+class MappedJsonlFile implements Closeable {
+
+	private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+	private static final int ALIGN_BUFFER_SIZE = 64 * 1024;
+
+	private final FileChannel channel;
+	private final long size;
+
+	MappedJsonlFile(Path path) throws IOException {
+		this.channel = FileChannel.open(path, StandardOpenOption.READ);
+		this.size = channel.size();
+	}
+
+	long size() {
+		return size;
+	}
+
+	/**
+	 * Splits the file into at most {@code parts} ranges of roughly the same size. Every range but the first starts
+	 * right after a line terminator, so no line spans two ranges.
+	 */
+	List<Range> split(int parts) throws IOException {
+		List<Range> ranges = new ArrayList<>(parts);
+		long start = 0;
+		for (int i = 1; i <= parts && start < size; i++) {
+			long end = i == parts ? size : alignToLine(Math.max(start, size / parts * i));
+			if (end > start) {
+				ranges.add(new Range(start, end));
+				start = end;
+			}
+		}
+		return ranges;
+	}
+
+	/**
+	 * @return offset just past the first line terminator at or after {@code position - 1}, or the file size
+	 */
+	private long alignToLine(long position) throws IOException {
+		if (position == 0) {
+			return 0;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(ALIGN_BUFFER_SIZE);
+		long p = position - 1;
+		while (p < size) {
+			buffer.clear();
+			int read = channel.read(buffer, p);
+			if (read <= 0) {
+				break;
+			}
+			for (int i = 0; i < read; i++) {
+				if (buffer.get(i) == '\n') {
+					return p + i + 1;
+				}
+			}
+			p += read;
+		}
+		return size;
+	}
+
+	/**
+	 * Iterates lines between the given offsets; {@code start} has to be at a line boundary.
+	 */
+	Iterator<JsonlBytes> lines(long start, long end) {
+		return new RangeIterator(start, Math.min(end, size));
+	}
+
+	@Override public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Byte range {@code [start, end)} of the file.
+	 */
+	record Range(long start, long end) {
+	}
+
+	private class RangeIterator implements Iterator<JsonlBytes> {
+
+		private final long end;
+		private long position;
+		private long windowSize = WINDOW_SIZE;
+		private MappedByteBuffer window;
+		private long windowStart;
+		private JsonlBytes next;
+
+		private RangeIterator(long start, long end) {
+			this.position = start;
+			this.end = end;
+		}
+
+		@Override public boolean hasNext() {
+			if (next == null && position < end) {
+				try {
+					next = readLine();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			return next != null;
+		}
+
+		@Override public JsonlBytes next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			JsonlBytes line = next;
+			next = null;
+			return line;
+		}
+
+		private JsonlBytes readLine() throws IOException {
+			while (true) {
+				if (window == null || position >= windowStart + window.limit()) {
+					map(position);
+				}
+				int from = (int) (position - windowStart);
+				int limit = window.limit();
+				int i = from;
+				while (i < limit && window.get(i) != '\n') {
+					i++;
+				}
+				if (i < limit || windowStart + limit >= end) {
+					// either a terminated line or the unterminated last line of the range
+					int length = i - from;
+					if (length > 0 && window.get(i - 1) == '\r') {
+						length--;
+					}
+					byte[] bytes = new byte[length];
+					window.get(from, bytes);
+					position = windowStart + Math.min(i + 1, limit);
+					return new JsonlBytes(bytes, position);
+				}
+				if (from == 0) {
+					// the line does not fit into the window
+					windowSize = Math.min(2 * windowSize, Integer.MAX_VALUE);
+				}
+				map(position);
+			}
+		}
+
+		private void map(long start) throws IOException {
+			windowStart = start;
+			window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, end - start));
+		}
+	}
+}
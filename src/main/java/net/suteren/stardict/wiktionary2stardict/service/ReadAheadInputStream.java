@@ -0,0 +1,99 @@
+package net.suteren.stardict.wiktionary2stardict.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Reads the wrapped stream ahead on a dedicated thread into a bounded queue of blocks. Wrapped around a decompressing
+ * stream it moves decompression off the consumer thread, so it runs in parallel with parsing.
+ */
+@Slf4j
+class ReadAheadInputStream extends InputStream {
+
+	private static final int BLOCK_SIZE = 1024 * 1024;
+	private static final int QUEUE_CAPACITY = 8;
+	private static final byte[] END = new byte[0];
+
+	private final InputStream source;
+	private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+	private final Thread producer;
+	private volatile Throwable failure;
+	private byte[] block;
+	private int position;
+
+	ReadAheadInputStream(InputStream source, String name) {
+		this.source = source;
+		this.producer = Thread.ofPlatform()
+			.name("read-ahead-" + name)
+			.daemon()
+			.start(this::produce);
+	}
+
+	private void produce() {
+		try {
+			while (true) {
+				byte[] buffer = new byte[BLOCK_SIZE];
+				int length = source.readNBytes(buffer, 0, BLOCK_SIZE);
+				if (length == 0) {
+					break;
+				}
+				queue.put(length < BLOCK_SIZE ? Arrays.copyOf(buffer, length) : buffer);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Throwable e) {
+			// decompressors fail with runtime exceptions too, the consumer must not wait for a block forever
+			failure = e;
+		} finally {
+			try {
+				queue.put(END);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	@Override public int read() throws IOException {
+		byte[] single = new byte[1];
+		int read = read(single, 0, 1);
+		return read < 0 ? -1 : single[0] & 0xff;
+	}
+
+	@Override public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (block == null || position >= block.length) {
+			if (block == END) {
+				return -1;
+			}
+			try {
+				block = queue.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while reading ahead", e);
+			}
+			position = 0;
+			if (block == END) {
+				if (failure != null) {
+					throw failure instanceof IOException io ? io : new IOException("Failed to read ahead: " + failure.getMessage(), failure);
+				}
+				return -1;
+			}
+		}
+		int length = Math.min(len, block.length - position);
+		System.arraycopy(block, position, b, off, length);
+		position += length;
+		return length;
+	}
+
+	@Override public void close() throws IOException {
+		producer.interrupt();
+		source.close();
+	}
+}
@@ -3,28 +3,31 @@ package net.suteren.stardict.wiktionary2stardict.service;
 import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import lombok.extern.slf4j.Slf4j;
 import net.suteren.stardict.wiktionary2stardict.converter.WiktionaryEntryRenderers;
 import net.suteren.stardict.wiktionary2stardict.jpa.entity.LanguageCombinationEntity;
-import net.suteren.stardict.wiktionary2stardict.jpa.entity.TranslationEntity;
-import net.suteren.stardict.wiktionary2stardict.jpa.repository.WordDefinitionRepository;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.TranslationRowEntity;
 import net.suteren.stardict.wiktionary2stardict.model.Sense;
 import net.suteren.stardict.wiktionary2stardict.model.Sound;
 import net.suteren.stardict.wiktionary2stardict.model.WiktionaryEntry;
@@ -37,16 +40,20 @@ import net.suteren.stardict.wiktionary2stardict.stardict.io.DictFileWriter;
 import net.suteren.stardict.wiktionary2stardict.stardict.io.IdxFileWriter;
 import net.suteren.stardict.wiktionary2stardict.stardict.io.IfoFileWriter;
 import net.suteren.stardict.wiktionary2stardict.stardict.io.SynFileWriter;
+import net.suteren.stardict.wiktionary2stardict.store.DefinitionStore;
 
 @Slf4j
 @Service public class StardictExportService {
 
-	private final WordDefinitionRepository repository;
-	private final ObjectMapper mapper;
+	/** Translations whose definitions are loaded and rendered together. */
+	static final int BLOCK_SIZE = 500;
+	/** Rendered definitions kept for later translations to the same definition. */
+	static final int RENDERED_CACHE_SIZE = 10_000;
+
+	private final DefinitionStore store;
 
-	public StardictExportService(WordDefinitionRepository repository) {
-		this.repository = repository;
-		this.mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+	public StardictExportService(DefinitionStore store) {
+		this.store = store;
 	}
 
 	@Transactional(readOnly = true)
@@ -54,14 +61,7 @@ import net.suteren.stardict.wiktionary2stardict.stardict.io.SynFileWriter;
 		if (langCodeFrom != null && langCodeTo != null) {
 			exportInternal(outputPrefix, bookname, langCodeFrom, langCodeTo, definitionFormats);
 		} else {
-			List<LanguageCombinationEntity> languageCombinations;
-			if (langCodeFrom != null) {
-				languageCombinations = repository.findLanguageCombinations(langCodeFrom);
-			} else if (langCodeTo != null) {
-				languageCombinations = repository.findLanguageCombinations(langCodeTo);
-			} else {
-				languageCombinations = repository.findLanguageCombinations();
-			}
+			List<LanguageCombinationEntity> languageCombinations = store.findLanguageCombinations(langCodeFrom, langCodeTo);
 			log.info("Exporting {} language combinations: {}", languageCombinations.size(), languageCombinations.stream()
 				.map(lc -> lc.from() + "->" + lc.to())
 				.collect(Collectors.joining(";")));
@@ -76,18 +76,26 @@ import net.suteren.stardict.wiktionary2stardict.stardict.io.SynFileWriter;
 		throws Exception {
 		String baseName = "%s%s-%s".formatted(outputPrefix, langCodeFrom, langCodeTo);
 
-		List<TranslationEntity> allTranslations = repository.findAllTranslations(langCodeFrom, langCodeTo);
-		log.info("Found {} translations from {} to {}.", allTranslations.size(), langCodeFrom, langCodeTo);
 		List<IdxEntry> sortedIdx;
+		AtomicLong translations = new AtomicLong();
+		Map<Long, Optional<List<DefinitionEntry>>> rendered = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override protected boolean removeEldestEntry(Map.Entry<Long, Optional<List<DefinitionEntry>>> eldest) {
+				return size() > RENDERED_CACHE_SIZE;
+			}
+		};
 
 		int sizeInBits;
-		try (DictFileWriter dictFileWriter = new DictFileWriter(new BufferedOutputStream(new FileOutputStream("%s.dict".formatted(baseName))))) {
-
-			sortedIdx = dictFileWriter.writeDefinitionFile(allTranslations.stream()
-				.map(e -> constructWordDefinition(e, definitionFormats))
-				.filter(Objects::nonNull));
+		try (Stream<TranslationRowEntity> allTranslations = store.streamTranslations(langCodeFrom, langCodeTo);
+			DictFileWriter dictFileWriter = new DictFileWriter(new BufferedOutputStream(new FileOutputStream("%s.dict".formatted(baseName))))) {
+
+			// translations come ordered by word, so the writer merges them as they stream and nothing accumulates
+			Iterator<TranslationRowEntity> rows = allTranslations.iterator();
+			sortedIdx = dictFileWriter.writeOrderedDefinitionFile(Stream.iterate(nextBlock(rows), block -> !block.isEmpty(), block -> nextBlock(rows))
+				.peek(block -> translations.addAndGet(block.size()))
+				.flatMap(block -> constructWordDefinitions(block, rendered, definitionFormats)));
 			sizeInBits = dictFileWriter.getSize() > 4L * 1024L * 1024L * 1024L ? Long.SIZE : Integer.SIZE;
 		}
+		log.info("Exported {} translations from {} to {}.", translations.get(), langCodeFrom, langCodeTo);
 		Collections.sort(sortedIdx);
 		List<SynonymumEntry> sortedSyn = IdxFileWriter.writeIdxFile(baseName, sortedIdx, sizeInBits);
 		Collections.sort(sortedSyn);
@@ -95,17 +103,58 @@ import net.suteren.stardict.wiktionary2stardict.stardict.io.SynFileWriter;
 		IfoFileWriter.writeIfoFile(bookname, langCodeFrom, langCodeTo, sortedIdx, sortedSyn, baseName, sizeInBits);
 	}
 
-	private WordDefinition constructWordDefinition(TranslationEntity e, Collection<Character> definitionFormats) {
+	private static List<TranslationRowEntity> nextBlock(Iterator<TranslationRowEntity> rows) {
+		List<TranslationRowEntity> block = new ArrayList<>(BLOCK_SIZE);
+		while (block.size() < BLOCK_SIZE && rows.hasNext()) {
+			block.add(rows.next());
+		}
+		return block;
+	}
 
-		log.debug("Processing {}", e.source().getWord());
-		WiktionaryEntry wiktionaryEntry = parseWiktionaryEntry(e);
-		if (wiktionaryEntry == null) {return null;}
+	/**
+	 * Renders a block of translations. Definitions are rendered once per export: the pre-parsed entries of the definitions
+	 * not rendered yet are loaded for the whole block at once and the rendered entries are kept for the following
+	 * translations to the same definition, up to {@link #RENDERED_CACHE_SIZE} definitions. The block is resolved from
+	 * its own map, as adding the new definitions to the cache may evict cached ones the block refers to.
+	 */
+	private Stream<WordDefinition> constructWordDefinitions(List<TranslationRowEntity> block,
+		Map<Long, Optional<List<DefinitionEntry>>> rendered, Collection<Character> definitionFormats) {
+		Map<Long, Optional<List<DefinitionEntry>>> blockDefinitions = new HashMap<>();
+		Map<Long, String> definitionWords = new HashMap<>();
+		for (TranslationRowEntity row : block) {
+			Optional<List<DefinitionEntry>> definitions = rendered.get(row.definitionId());
+			if (definitions != null) {
+				blockDefinitions.put(row.definitionId(), definitions);
+			} else {
+				definitionWords.put(row.definitionId(), row.definitionWord());
+			}
+		}
+		if (!definitionWords.isEmpty()) {
+			Map<Long, WiktionaryEntry> entries = store.findEntries(definitionWords.keySet());
+			definitionWords.forEach((id, word) -> {
+				Optional<List<DefinitionEntry>> definitions = Optional.ofNullable(entries.get(id))
+					.map(e -> constructDefinitions(word, e, definitionFormats));
+				blockDefinitions.put(id, definitions);
+				rendered.put(id, definitions);
+			});
+		}
+		return block.stream()
+			.filter(row -> StringUtils.isNotBlank(row.word()))
+			.map(row -> blockDefinitions.get(row.definitionId())
+				.map(definitions -> new WordDefinition(row.word(), new ArrayList<>(definitions)))
+				.orElse(null))
+			.filter(Objects::nonNull);
+	}
+
+	private List<DefinitionEntry> constructDefinitions(String definitionWord, WiktionaryEntry wiktionaryEntry,
+		Collection<Character> definitionFormats) {
+
+		log.debug("Processing {}", definitionWord);
 		WordDefinition wd = new WordDefinition();
-		wd.setWord(e.source().getWord());
 
 		if (CollectionUtils.isEmpty(definitionFormats) || definitionFormats.contains('m')) {
 
-			wd.getDefinitions().add(new DefinitionEntry(EntryType.MEANING, e.definition().getWord().getBytes(StandardCharsets.UTF_8)));
+			wd.getDefinitions().add(new DefinitionEntry(EntryType.MEANING, definitionWord.getBytes(StandardCharsets.UTF_8)));
 			Optional.of(wiktionaryEntry)
 				.map(WiktionaryEntry::getSenses)
 				.stream()
@@ -162,30 +211,15 @@ import net.suteren.stardict.wiktionary2stardict.stardict.io.SynFileWriter;
 		}
 
 		Set<DefinitionEntry> uniqueDefinitions = new HashSet<>(wd.getDefinitions());
-		wd.getDefinitions().clear();
-		wd.getDefinitions().addAll(uniqueDefinitions);
 
-		log.debug("Have {} definitions for {} word {}", wd.getDefinitions().size(), wiktionaryEntry.getWord(),
+		log.debug("Have {} definitions for {} word {}", uniqueDefinitions.size(), wiktionaryEntry.getWord(),
 			Optional.ofNullable(wiktionaryEntry.getLang_code()).orElse(wiktionaryEntry.getLang()));
 
-		return wd;
+		return List.copyOf(uniqueDefinitions);
 	}
 
 	private static void logException(Exception exception, WiktionaryEntry wiktionaryEntry) {
 		log.warn("Failed to render entry {}: {}", wiktionaryEntry.getWord(), exception.getMessage());
 		log.debug(exception.getMessage(), exception);
 	}
-
-	private WiktionaryEntry parseWiktionaryEntry(TranslationEntity e) {
-		WiktionaryEntry entry;
-		try {
-			entry = mapper.readValue(e.definition().getJson(), WiktionaryEntry.class);
-		} catch (Exception ex) {
-			return null;
-		}
-		if (StringUtils.isBlank(e.source().getWord())) {
-			return null;
-		}
-		return entry;
-	}
 }
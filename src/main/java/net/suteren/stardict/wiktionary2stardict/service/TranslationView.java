@@ -0,0 +1,21 @@
+package net.suteren.stardict.wiktionary2stardict.service;
+
+import lombok.NonNull;
+
+/**
+ * Translation as the view shows it: the source word and the plain JSON of the translating definition,
+ * decompressed when it is stored compressed.
+ */
+public record TranslationView(String word, String language, String type, String json) {
+
+	@Override public @NonNull String toString() {
+		return """
+			{
+				"word": "%s",
+				"language": "%s",
+				"type": "%s",
+				"definition": %s}
+			"""
+			.formatted(word, language, type, json);
+	}
+}
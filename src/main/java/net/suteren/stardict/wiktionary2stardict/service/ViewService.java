@@ -1,6 +1,7 @@
 package net.suteren.stardict.wiktionary2stardict.service;
 
 import java.util.List;
+import java.util.Set;
 
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
@@ -8,18 +9,32 @@ import org.springframework.transaction.annotation.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.suteren.stardict.wiktionary2stardict.jpa.entity.TranslationEntity;
-import net.suteren.stardict.wiktionary2stardict.jpa.repository.WordDefinitionRepository;
+import net.suteren.stardict.wiktionary2stardict.jpa.repository.TranslationPairRepository;
 
 @Slf4j
 @RequiredArgsConstructor
 @Component public class ViewService {
 
-	private final WordDefinitionRepository repository;
+	private final TranslationPairRepository pairRepository;
+	private final JsonCompressionService jsonCompression;
 
-	@Transactional
-	public List<TranslationEntity> view(String langCodeFrom, String langCodeTo, String word) {
-		List<TranslationEntity> translation = repository.findTranslation(langCodeFrom, langCodeTo, word);
+	/**
+	 * Finds the translations of the words containing the given word, ignoring case. A word shorter than a trigram
+	 * only matches word prefixes. Compressed JSON of the translations is decompressed into the returned views,
+	 * the entities are left as they were read.
+	 */
+	@Transactional(readOnly = true)
+	public List<TranslationView> view(String langCodeFrom, String langCodeTo, String word) {
+		String term = WordIndexService.normalize(word);
+		String escaped = WordIndexService.escapeLike(term);
+		Set<String> trigrams = WordIndexService.trigrams(term);
+		List<TranslationEntity> translation = trigrams.isEmpty()
+			? pairRepository.findTranslationsByWord(langCodeFrom, langCodeTo, escaped + "%")
+			: pairRepository.findTranslationsByTrigrams(langCodeFrom, langCodeTo, "%" + escaped + "%", trigrams, trigrams.size());
 		log.info("Found {} {} translations for {} word: {}", translation.size(), langCodeTo, langCodeFrom, word);
-		return translation;
+		return translation.stream()
+			.map(t -> new TranslationView(t.source().getWord(), t.source().getLanguage(), t.source().getType(),
+				jsonCompression.json(t.definition())))
+			.toList();
 	}
 }
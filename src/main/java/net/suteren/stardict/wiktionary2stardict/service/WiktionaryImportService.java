@@ -1,247 +1,699 @@
 package net.suteren.stardict.wiktionary2stardict.service;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedHashSet;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.tuple.Pair;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import lombok.extern.slf4j.Slf4j;
+import net.suteren.stardict.wiktionary2stardict.converter.WiktionaryEntryCodec;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.ImportCheckpointEntity;
 import net.suteren.stardict.wiktionary2stardict.jpa.entity.LinkType;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.MaintenanceTaskEntity;
 import net.suteren.stardict.wiktionary2stardict.jpa.entity.WordDefinitionEntity;
 import net.suteren.stardict.wiktionary2stardict.jpa.entity.WordDefinitionLinkEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.repository.ImportCheckpointRepository;
+import net.suteren.stardict.wiktionary2stardict.jpa.repository.LanguagePairStatsRepository;
+import net.suteren.stardict.wiktionary2stardict.jpa.repository.MaintenanceTaskRepository;
+import net.suteren.stardict.wiktionary2stardict.jpa.repository.TranslationPairRepository;
 import net.suteren.stardict.wiktionary2stardict.jpa.repository.WordDefinitionRepository;
 import net.suteren.stardict.wiktionary2stardict.model.Sense;
 import net.suteren.stardict.wiktionary2stardict.model.Synonym;
 import net.suteren.stardict.wiktionary2stardict.model.WiktionaryEntry;
+import net.suteren.stardict.wiktionary2stardict.sink.DefinitionSink;
+import net.suteren.stardict.wiktionary2stardict.sink.DefinitionSinkFactory;
+import net.suteren.stardict.wiktionary2stardict.sink.LanguagePartitions;
+import net.suteren.stardict.wiktionary2stardict.store.DefinitionStore;
+import net.suteren.stardict.wiktionary2stardict.store.EmbeddedDefinitionStore;
 
 @Slf4j
 @Service public class WiktionaryImportService {
 
 	private final WordDefinitionRepository repository;
+	private final TranslationPairRepository pairRepository;
+	private final GlossService glossService;
+	private final WordIndexService wordIndexService;
+	private final JsonCompressionService jsonCompression;
+	private final LanguagePairStatsRepository statsRepository;
+	private final KaikkiDownloadService downloadService;
+	private final DownloadCache downloadCache;
+	private final KaikkiLanguageCatalog languageCatalog;
+	private final ImportProperties importProperties;
+	private final DownloadProperties downloadProperties;
+	private final ImportCheckpointRepository checkpointRepository;
+	private final MaintenanceTaskRepository maintenanceTaskRepository;
+	private final DefinitionSinkFactory sinkFactory;
+	private final LanguagePartitions languagePartitions;
+	private final DefinitionStore store;
+	private final TransactionTemplate transactionTemplate;
 	private final ObjectMapper mapper;
-	private final HttpClient httpClient = HttpClient.newHttpClient();
 
-	private static final URI KAAKKI_DICTIONARY_ROOT = URI.create("https://kaikki.org/dictionary/");
-	private static final Pattern LANG_PATTERN = Pattern.compile("(.*\\S)\\s*\\(\\s*\\d+\\s*(?:senses\\s*)?\\)\\s*$");
-	private static final Pattern LANG_URL_PATTERN = Pattern.compile("^/dictionary(/[^/]+(/(?:index.html)?)?)$");
 	private static final Pattern EXPLANATION_PATTERN = Pattern.compile("^(.*\\S)\\s*\\(.*\\)$");
+	private static final int LINE_QUEUE_CAPACITY = 4096;
+	private static final String RANGE_SEPARATOR = "#";
+	private static final String KEY_SEPARATOR = "\u0000";
+	private static final String RECORD_SEPARATOR = "\u001e";
+	private static final String UNIT_SEPARATOR = "\u001f";
+	private static final String PAIR_BACKFILL_TASK = "translation-pair-backfill";
 
-	public WiktionaryImportService(WordDefinitionRepository repository) {
+	public WiktionaryImportService(WordDefinitionRepository repository, TranslationPairRepository pairRepository,
+		GlossService glossService, WordIndexService wordIndexService, JsonCompressionService jsonCompression,
+		LanguagePairStatsRepository statsRepository, ImportCheckpointRepository checkpointRepository,
+		MaintenanceTaskRepository maintenanceTaskRepository, KaikkiDownloadService downloadService, DownloadCache downloadCache, KaikkiLanguageCatalog languageCatalog,
+		ImportProperties importProperties, DownloadProperties downloadProperties, DefinitionSinkFactory sinkFactory,
+		LanguagePartitions languagePartitions, DefinitionStore store, PlatformTransactionManager transactionManager) {
 		this.repository = repository;
+		this.pairRepository = pairRepository;
+		this.glossService = glossService;
+		this.wordIndexService = wordIndexService;
+		this.jsonCompression = jsonCompression;
+		this.statsRepository = statsRepository;
+		this.checkpointRepository = checkpointRepository;
+		this.maintenanceTaskRepository = maintenanceTaskRepository;
+		this.downloadService = downloadService;
+		this.downloadCache = downloadCache;
+		this.languageCatalog = languageCatalog;
+		this.importProperties = importProperties;
+		this.downloadProperties = downloadProperties;
+		this.sinkFactory = sinkFactory;
+		this.languagePartitions = languagePartitions;
+		this.store = store;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
 		this.mapper = new ObjectMapper()
 			.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
 	}
 
-	@Transactional
-	public int importJsonlPath(String path) throws IOException {
-		int count = 0;
+	/**
+	 * Imports a JSONL file or all JSONL files of a directory. Entries are committed in chunks and every commit
+	 * records a checkpoint, so an interrupted import continues where the last commit stopped.
+	 * The import is incremental: only new and changed entries are written and entries which vanished
+	 * from a source are removed once its input is complete. An {@link EmbeddedDefinitionStore} replaces every source as a whole
+	 * instead, without checkpoints.
+	 */
+	public ImportReport importJsonlPath(String path) throws IOException {
 		File f = new File(path);
-		if (f.isDirectory()) {
-			File[] list = f.listFiles();
-			if (list != null) {
-				for (File file : list) {
-					if (file.isDirectory()) {
-						count += importJsonlPath(file.getPath());
-					} else if (file.isFile()) {
-						count += importJsonlFile(file);
-					}
-				}
-			}
-		} else if (f.isFile()) {
-			count += importJsonlFile(f);
-		} else {
+		if (!f.exists()) {
 			throw new IOException("Path not found: " + path);
 		}
-		return count;
+		List<File> files;
+		try (Stream<Path> walk = Files.walk(f.toPath())) {
+			files = walk
+				.filter(Files::isRegularFile)
+				.filter(p -> JsonlFiles.isJsonl(p.getFileName().toString()))
+				.sorted()
+				.map(Path::toFile)
+				.toList();
+		}
+		DefinitionSink sink = startSink();
+		long importRun = System.currentTimeMillis();
+		ImportReport report = new ImportReport();
+		for (File file : files) {
+			importJsonlFile(file, sink, importRun, report);
+		}
+		finishSink(sink);
+		return report;
 	}
 
-	@Transactional
+	/**
+	 * Deletes the entries of the given sources, or all entries when none is given, see {@link DefinitionStore#deleteSources}.
+	 *
+	 * @return number of deleted entries
+	 */
 	public long cleanupEntries(Collection<String> source) {
-		long count;
-		if (source == null || source.isEmpty()) {
-			count = repository.count();
-			repository.deleteAll();
-		} else {
-			count = source.stream()
-				.mapToLong(s -> {
-					long c = repository.countBySource(s);
-					repository.deleteBySource(s);
-					return c;
-				})
-				.sum();
-		}
-		return count;
-	}
-
-	public int importJsonlFile(File file) throws IOException {
-		int saved = 0;
-		if (file.getName().endsWith(".jsonl")) {
-			String sourceLabel = file.getName().replaceAll("^kaikki.org-dictionary-(.*)\\.jsonl$", "$1");
-			try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
-				String line;
-				while ((line = br.readLine()) != null) {
-					line = line.trim();
-					if (line.isEmpty())
-						continue;
-					if (processEntry(file, sourceLabel, line, parseEntry(line)))
-						continue;
-					saved++;
-				}
+		return store.deleteSources(source);
+	}
+
+	public ImportReport importJsonlFile(File file) throws IOException {
+		DefinitionSink sink = startSink();
+		ImportReport report = new ImportReport();
+		importJsonlFile(file, sink, System.currentTimeMillis(), report);
+		finishSink(sink);
+		return report;
+	}
+
+	private void importJsonlFile(File file, DefinitionSink sink, long importRun, ImportReport report) throws IOException {
+		if (!JsonlFiles.isJsonl(file.getName()))
+			return;
+		if (store instanceof EmbeddedDefinitionStore embedded) {
+			try (InputStream in = JsonlFiles.open(file.toPath(), 0)) {
+				report.add(importEmbedded(embedded, new JsonlLineReader(in, 0), file.getName(), JsonlFiles.getSourceLabel(file.getName())));
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
 			}
+			return;
+		}
+		String input = file.getAbsolutePath();
+		Optional<ImportCheckpointEntity> stored = checkpointRepository.findById(input)
+			.filter(c -> isCurrent(c, file));
+		if (stored.isEmpty() && isSplittable(file)) {
+			importSplitJsonlFile(file, sink, importRun, report);
+			return;
+		}
+		ImportCheckpointEntity checkpoint = stored
+			.orElseGet(() -> newCheckpoint(input, JsonlFiles.getSourceLabel(file.getName()), file.length(), file.lastModified(), importRun));
+		try (InputStream in = JsonlFiles.open(file.toPath(), checkpoint.getByteOffset())) {
+			importJsonlLines(new JsonlLineReader(in, checkpoint.getByteOffset()), checkpoint, file.getName(), sink, report);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	private boolean isSplittable(File file) {
+		return importProperties.getWorkers() > 1
+			&& !JsonlFiles.isCompressed(file.getName())
+			&& file.length() >= importProperties.getSplitThreshold().toBytes();
+	}
+
+	/**
+	 * Whether the checkpoint belongs to the current version of the file and records the import run its entries were written by.
+	 */
+	private static boolean isCurrent(ImportCheckpointEntity checkpoint, File file) {
+		return Objects.equals(checkpoint.getInputSize(), file.length()) && Objects.equals(checkpoint.getInputModified(), file.lastModified())
+			&& checkpoint.getImportRun() != null;
+	}
+
+	/**
+	 * Imports a single large file in byte ranges aligned to lines, one range per worker. Every worker reads its range
+	 * from a memory mapped file and parses the raw UTF-8 lines, the chunks are persisted together with the checkpoint
+	 * of their range. The ranges of an interrupted import are kept, so it continues with the same split.
+	 */
+	private void importSplitJsonlFile(File file, DefinitionSink sink, long importRun, ImportReport report) throws IOException {
+		String source = JsonlFiles.getSourceLabel(file.getName());
+		try (MappedJsonlFile mapped = new MappedJsonlFile(file.toPath())) {
+			List<ImportCheckpointEntity> checkpoints = rangeCheckpoints(file, mapped, importRun);
+			IncrementalDefinitionWriter writer = newWriter(sink, checkpoints.getFirst(), report);
+			ImportPipeline<WordDefinitionEntity> pipeline = new ImportPipeline<>(importProperties.getWorkers(), importProperties.getChunkSize());
+			pipeline.runParts(
+				checkpoints.stream().map(c -> mapped.lines(c.getByteOffset(), c.getRangeEnd())).toList(),
+				line -> toEntity(file.getName(), source, line.bytes()),
+				JsonlBytes::endOffset,
+				(part, chunk) -> persistChunk(chunk, checkpoints.get(part), writer));
+			transactionTemplate.executeWithoutResult(status -> {
+				writer.removeVanished();
+				checkpointRepository.deleteAllById(checkpoints.stream()
+					.map(ImportCheckpointEntity::getInput)
+					.toList());
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
 		}
-		return saved;
 	}
 
 	/**
-	 * Fetches available languages from https://kaikki.org/dictionary/ and returns a list.
-	 * Reimplemented to use Jsoup for robust HTML parsing instead of regex.
+	 * @return checkpoints of the ranges of an interrupted import of the file, or of a new split of the file
 	 */
-	public Set<Pair<String, String>> listKaikkiLanguages() throws IOException, InterruptedException {
-		HttpRequest request = HttpRequest.newBuilder()
-			.uri(KAAKKI_DICTIONARY_ROOT)
-			.header("User-Agent", "wiktionary2stardict/" + getClass().getPackage().getImplementationVersion())
-			.build();
-		HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
-		if (response.statusCode() != 200) {
-			throw new IOException("Failed to load languages from " + KAAKKI_DICTIONARY_ROOT + ": HTTP " + response.statusCode());
-		}
-		String html = response.body();
-
-		// Parse with Jsoup using the dictionary root as the base URL
-		Document doc = Jsoup.parse(html, KAAKKI_DICTIONARY_ROOT.toString());
-		Elements links = doc.select("li a[href]");
-		Set<org.apache.commons.lang3.tuple.Pair<String, String>> langs = new LinkedHashSet<>();
-
-		for (Element a : links) {
-			String absHref = a.attr("abs:href");
-			Matcher m = LANG_PATTERN.matcher(a.text());
-			String lang = null;
-			if (m.matches()) {
-				lang = m.group(1);
-			}
-			String rest = getHref(absHref);
-			if (rest == null)
-				continue;
+	private List<ImportCheckpointEntity> rangeCheckpoints(File file, MappedJsonlFile mapped, long importRun) throws IOException {
+		String input = file.getAbsolutePath();
+		List<ImportCheckpointEntity> stored = checkpointRepository.findByInputStartingWith(input + RANGE_SEPARATOR);
+		if (!stored.isEmpty() && stored.stream().allMatch(c -> isCurrent(c, file) && c.getImportRun().equals(stored.getFirst().getImportRun()))) {
+			log.info("Resuming import of {} in {} ranges ({} entries already imported)", file.getName(), stored.size(),
+				stored.stream().mapToLong(ImportCheckpointEntity::getEntries).sum());
+			return stored.stream()
+				.sorted(Comparator.comparingLong(ImportCheckpointEntity::getByteOffset))
+				.toList();
+		}
+		String source = JsonlFiles.getSourceLabel(file.getName());
+		List<ImportCheckpointEntity> checkpoints = mapped.split(importProperties.getWorkers()).stream()
+			.map(range -> {
+				ImportCheckpointEntity checkpoint = newCheckpoint(input + RANGE_SEPARATOR + range.start(), source, file.length(),
+					file.lastModified(), importRun);
+				checkpoint.setByteOffset(range.start());
+				checkpoint.setRangeEnd(range.end());
+				return checkpoint;
+			})
+			.toList();
+		log.info("Importing {} ({} bytes) in {} parallel ranges", file.getName(), mapped.size(), checkpoints.size());
+		// all ranges are recorded upfront, so a resumed import never misses a range that did not commit yet
+		transactionTemplate.executeWithoutResult(status -> {
+			checkpointRepository.deleteAll(stored);
+			checkpointRepository.saveAll(checkpoints);
+		});
+		return checkpoints;
+	}
 
-			langs.add(Pair.of(rest, lang));
+	private void importJsonlLines(Iterator<JsonlLine> lines, ImportCheckpointEntity checkpoint, String name, DefinitionSink sink,
+		ImportReport report) {
+		if (checkpoint.getByteOffset() > 0) {
+			log.info("Resuming import of {} at byte {} ({} entries already imported)", name, checkpoint.getByteOffset(), checkpoint.getEntries());
 		}
-		return langs;
+		IncrementalDefinitionWriter writer = newWriter(sink, checkpoint, report);
+		ImportPipeline<WordDefinitionEntity> pipeline = new ImportPipeline<>(importProperties.getWorkers(), importProperties.getChunkSize());
+		pipeline.run(lines, line -> toEntity(name, checkpoint.getSource(), line),
+			chunk -> persistChunk(chunk, checkpoint, writer));
+		transactionTemplate.executeWithoutResult(status -> {
+			writer.removeVanished();
+			checkpointRepository.deleteById(checkpoint.getInput());
+		});
 	}
 
-	private static String getHref(String absHref) {
-		if (absHref.isBlank())
-			return null;
-		try {
-			return Optional.ofNullable(URI.create(absHref).getPath())
-				.map(LANG_URL_PATTERN::matcher)
-				.filter(Matcher::matches)
-				.map(m -> m.group(1))
-				.orElse(null);
-		} catch (IllegalArgumentException ignored) {
+	/**
+	 * Imports all lines of a source into the embedded store, replacing its stored definitions once all are written.
+	 */
+	private ImportReport importEmbedded(EmbeddedDefinitionStore embedded, Iterator<JsonlLine> lines, String name, String source) throws IOException {
+		ImportReport report = new ImportReport();
+		ImportPipeline<WordDefinitionEntity> pipeline = new ImportPipeline<>(importProperties.getWorkers(), importProperties.getChunkSize());
+		try (EmbeddedDefinitionStore.SourceWriter writer = embedded.openSource(source)) {
+			int count = pipeline.run(lines, line -> toEntity(name, source, line), chunk -> {
+				try {
+					writer.write(chunk.items());
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+			writer.commit();
+			report.addInserted(count);
+		}
+		return report;
+	}
+
+	private IncrementalDefinitionWriter newWriter(DefinitionSink sink, ImportCheckpointEntity checkpoint, ImportReport report) {
+		return transactionTemplate.execute(status -> new IncrementalDefinitionWriter(repository, pairRepository, glossService, wordIndexService, sink,
+			checkpoint.getSource(), checkpoint.getImportRun(), !sink.isDeferringIndexes(), report));
+	}
+
+	/**
+	 * @return sink of the JPA store, {@code null} for an embedded store which is written without one
+	 */
+	private DefinitionSink startSink() {
+		if (store instanceof EmbeddedDefinitionStore) {
 			return null;
 		}
+		DefinitionSink sink = sinkFactory.create();
+		transactionTemplate.executeWithoutResult(status -> sink.start());
+		return sink;
+	}
+
+	private void finishSink(DefinitionSink sink) {
+		if (sink == null) {
+			return;
+		}
+		transactionTemplate.executeWithoutResult(status -> {
+			sink.finish();
+			if (sink.isDeferringIndexes()) {
+				log.info("Building translation pairs");
+				log.info("Built {} translation pairs", pairRepository.rebuild());
+			}
+			statsRepository.refresh();
+		});
+		jsonCompression.logStatistics();
+	}
+
+	/**
+	 * Builds the pairs of definitions stored before the pairs were maintained, once; imports maintain them since.
+	 * A database without any pairs is no sign of a missing backfill, it may have a single language only, so
+	 * the backfill records its completion and later starts skip it.
+	 */
+	@EventListener(ContextRefreshedEvent.class)
+	public void backfillPairs() {
+		if (maintenanceTaskRepository.existsById(PAIR_BACKFILL_TASK)) {
+			return;
+		}
+		transactionTemplate.executeWithoutResult(status -> {
+			int pairs = pairRepository.rebuild();
+			if (pairs > 0) {
+				log.info("Built {} translation pairs of definitions stored before the pairs were maintained", pairs);
+				statsRepository.refresh();
+			}
+			maintenanceTaskRepository.save(new MaintenanceTaskEntity(PAIR_BACKFILL_TASK, Instant.now()));
+		});
+	}
+
+	/**
+	 * Writes a chunk together with the checkpoint of its end offset in one transaction, once the partitions
+	 * of its languages exist.
+	 */
+	private void persistChunk(ImportPipeline.Chunk<WordDefinitionEntity> chunk, ImportCheckpointEntity checkpoint,
+		IncrementalDefinitionWriter writer) {
+		languagePartitions.ensurePartitions(chunk.items());
+		transactionTemplate.executeWithoutResult(status -> {
+			writer.write(chunk.items());
+			checkpoint.setByteOffset(chunk.endOffset());
+			checkpoint.setEntries(checkpoint.getEntries() + chunk.items().size());
+			checkpoint.setUpdated(Instant.now());
+			checkpointRepository.save(checkpoint);
+		});
+	}
+
+	private static ImportCheckpointEntity newCheckpoint(String input, String source, Long inputSize, Long inputModified, long importRun) {
+		ImportCheckpointEntity checkpoint = new ImportCheckpointEntity();
+		checkpoint.setImportRun(importRun);
+		checkpoint.setInput(input);
+		checkpoint.setSource(source);
+		checkpoint.setInputSize(inputSize);
+		checkpoint.setInputModified(inputModified);
+		return checkpoint;
 	}
 
 	/**
 	 * Downloads Kaikki JSONL files for the given language names and imports them into DB.
 	 * Language handling follows the Python pattern: URL path uses the language verbatim, while
 	 * the filename part strips spaces, hyphens and apostrophes.
+	 * The dumps are fetched through the {@link DownloadCache} concurrently on virtual threads, at most
+	 * {@link DownloadProperties#getConcurrency()} at once, and every dump is imported as soon as its download completes,
+	 * while the others keep downloading. A failed download does not stop the others; the failures are reported
+	 * once the successfully downloaded languages are imported.
+	 * With {@link DownloadProperties#isStream()} the dumps are imported while they download instead, see {@link #streamAndImport}.
 	 */
-	@Transactional
-	public int downloadAndImportLanguages(List<String> languages) throws IOException, InterruptedException {
+	public ImportReport downloadAndImportLanguages(List<String> languages) throws IOException, InterruptedException {
+		ImportReport totalReport = new ImportReport();
 		if (languages == null || languages.isEmpty())
-			return 0;
-		int totalImported = 0;
-		File tempDir = Files.createTempDirectory("kaikki-jsonl-").toFile();
-		tempDir.deleteOnExit();
+			return totalReport;
+		List<KaikkiDump> dumps = new ArrayList<>();
 		for (String language : languages) {
-			if (StringUtils.isBlank(language))
-				continue;
-			String langTrim = language.trim();
-			String langNoSpaces = langTrim.replace(" ", "").replace("-", "").replace("'", "");
-			String fileName = "kaikki.org-dictionary-" + langNoSpaces + ".jsonl";
-			URI uri;
-			log.info("Downloading {} to {}", language, tempDir.getAbsolutePath());
-			try {
-				//"https://kaikki.org/dictionary/{self.source_language}/kaikki.org-dictionary-{lang_nospaces}.jsonl"
-				uri = new URI(
-					"https",
-					"kaikki.org",
-					"/dictionary/" + langTrim + "/" + fileName,
-					null
-				);
-			} catch (Exception e) {
-				throw new IOException("Invalid language for URL: " + langTrim, e);
+			if (StringUtils.isNotBlank(language))
+				dumps.add(kaikkiDump(language));
+		}
+		long importRun = System.currentTimeMillis();
+		DefinitionSink sink = startSink();
+		List<String> failed = List.of();
+		if (!downloadProperties.isStream()) {
+			failed = downloadConcurrently(dumps, sink, importRun, totalReport);
+		} else {
+			for (KaikkiDump dump : dumps) {
+				totalReport.add(streamAndImport(dump, sink, importRun));
 			}
-			HttpRequest request = HttpRequest.newBuilder()
-				.uri(uri)
-				.header("User-Agent", "wiktionary2stardict/" + getClass().getPackage().getImplementationVersion())
-				.build();
-			HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
-			if (response.statusCode() != 200) {
-				throw new IOException("Failed to download from " + uri + ": HTTP " + response.statusCode());
+		}
+		finishSink(sink);
+		if (!failed.isEmpty()) {
+			throw new IOException("Failed to download " + String.join(", ", failed) + " (imported: " + totalReport + ")");
+		}
+		return totalReport;
+	}
+
+	/**
+	 * Resolves the language through the {@link KaikkiLanguageCatalog}, which gives the directory name Kaikki uses.
+	 * A language the catalogue does not know is rejected; without any catalogue the name is used verbatim.
+	 */
+	private KaikkiDump kaikkiDump(String language) throws IOException, InterruptedException {
+		String langTrim = language.trim();
+		try {
+			langTrim = languageCatalog.find(langTrim)
+				.map(KaikkiLanguage::path)
+				.orElseThrow(() -> new IllegalArgumentException("Unknown Kaikki language: " + language.trim()));
+		} catch (IOException e) {
+			log.warn("Kaikki languages are not available, using {} verbatim: {}", langTrim, e.getMessage());
+		} catch (IllegalArgumentException e) {
+			throw new IOException(e.getMessage() + " (see the listl command)", e);
+		}
+		String langNoSpaces = langTrim.replace(" ", "").replace("-", "").replace("'", "");
+		String fileName = "kaikki.org-dictionary-" + langNoSpaces + ".jsonl" + downloadProperties.getCompression().getSuffix();
+		try {
+			//"https://kaikki.org/dictionary/{self.source_language}/kaikki.org-dictionary-{lang_nospaces}.jsonl"
+			URI uri = new URI(
+				"https",
+				"kaikki.org",
+				"/dictionary/" + langTrim + "/" + fileName,
+				null
+			);
+			return new KaikkiDump(language, langNoSpaces, fileName, uri);
+		} catch (Exception e) {
+			throw new IOException("Invalid language for URL: " + langTrim, e);
+		}
+	}
+
+	/**
+	 * Fetches the dumps through the cache on virtual threads and imports each of them on the calling thread
+	 * in the order the downloads complete. A dump the cache found unchanged is skipped when its source is already
+	 * imported completely.
+	 *
+	 * @return languages which failed to download
+	 */
+	private List<String> downloadConcurrently(List<KaikkiDump> dumps, DefinitionSink sink, long importRun, ImportReport totalReport)
+		throws IOException, InterruptedException {
+		log.info("Downloading {} languages, {} at once", dumps.size(), downloadProperties.getConcurrency());
+		Semaphore permits = new Semaphore(downloadProperties.getConcurrency());
+		List<String> failed = new ArrayList<>();
+		ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("kaikki-download-", 0).factory());
+		try {
+			CompletionService<DownloadedDump> downloads = new ExecutorCompletionService<>(executor);
+			for (KaikkiDump dump : dumps) {
+				downloads.submit(() -> download(dump, permits));
 			}
-			File out = new File(tempDir, fileName);
-			try (FileWriter fw = new FileWriter(out, StandardCharsets.UTF_8)) {
-				fw.write(response.body());
+			for (int done = 1; done <= dumps.size(); done++) {
+				DownloadedDump downloaded = getResult(downloads.take());
+				KaikkiDump dump = downloaded.dump();
+				if (downloaded.failure() != null) {
+					log.error("Failed to download {} from {}: {}", dump.language(), dump.uri(), downloaded.failure().getMessage());
+					failed.add(dump.language());
+					continue;
+				}
+				// the dump stays pinned in the cache until its import is done, so other downloads cannot evict it
+				try {
+					if (!downloaded.cached().modified() && isImported(downloaded.cached().file())) {
+						log.info("{} is unchanged and already imported ({} of {} languages)", dump.language(), done, dumps.size());
+						continue;
+					}
+					ImportReport report = new ImportReport();
+					importJsonlFile(downloaded.cached().file(), sink, importRun, report);
+					log.info("Imported {} ({} of {} languages): {}", dump.language(), done, dumps.size(), report);
+					totalReport.add(report);
+				} finally {
+					downloadCache.release(downloaded.cached());
+				}
+			}
+		} catch (IOException | InterruptedException | RuntimeException e) {
+			executor.shutdownNow();
+			throw e;
+		} finally {
+			executor.close();
+		}
+		return failed;
+	}
+
+	private DownloadedDump download(KaikkiDump dump, Semaphore permits) throws InterruptedException {
+		permits.acquire();
+		try {
+			log.info("Downloading {} from {}", dump.language(), dump.uri());
+			return new DownloadedDump(dump, downloadCache.fetch(dump.uri(), dump.fileName()), null);
+		} catch (IOException e) {
+			return new DownloadedDump(dump, null, e);
+		} finally {
+			permits.release();
+		}
+	}
+
+	/**
+	 * Whether entries of the file are stored and no import of it is pending.
+	 */
+	private boolean isImported(File file) {
+		if (store instanceof EmbeddedDefinitionStore embedded) {
+			return embedded.containsSource(JsonlFiles.getSourceLabel(file.getName()));
+		}
+		return repository.existsBySource(JsonlFiles.getSourceLabel(file.getName()))
+			&& checkpointRepository.findByInputStartingWith(file.getAbsolutePath()).isEmpty();
+	}
+
+	private static DownloadedDump getResult(Future<DownloadedDump> future) throws InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof RuntimeException re ? re : new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Imports a dump while it is still downloading: a reader thread feeds lines of the response body into a bounded queue
+	 * which is drained by the importer, so network transfer, parsing and DB writes overlap.
+	 * An interrupted import continues with a range request from its last checkpoint while the dump is unchanged,
+	 * otherwise and for an embedded store the whole dump is imported again.
+	 */
+	private ImportReport streamAndImport(KaikkiDump dump, DefinitionSink sink, long importRun) throws IOException, InterruptedException {
+		log.info("Downloading and importing {} from {}", dump.language(), dump.uri());
+		if (store instanceof EmbeddedDefinitionStore embedded) {
+			ImportReport report;
+			Download download = openDownload(dump.uri(), dump.fileName(), 0, KaikkiDownloadService.Validators.NONE);
+			try (JsonlLineQueue lines = new JsonlLineQueue(download.in(), 0, LINE_QUEUE_CAPACITY, dump.name())) {
+				report = importEmbedded(embedded, lines, dump.fileName(), JsonlFiles.getSourceLabel(dump.fileName()));
+			} catch (UncheckedIOException e) {
+				throw new IOException("Failed to download from " + dump.uri(), e.getCause());
+			}
+			log.info("Imported {} from {}: {}", dump.language(), dump.uri(), report);
+			return report;
+		}
+		String input = dump.uri().toString();
+		String source = JsonlFiles.getSourceLabel(dump.fileName());
+		ImportCheckpointEntity checkpoint = checkpointRepository.findById(input)
+			.filter(c -> c.getImportRun() != null)
+			.orElseGet(() -> newCheckpoint(input, source, null, null, importRun));
+		Download download = openDownload(dump.uri(), dump.fileName(), checkpoint.getByteOffset(),
+			new KaikkiDownloadService.Validators(checkpoint.getEtag(), checkpoint.getLastModified()));
+		if (download.offset() != checkpoint.getByteOffset()) {
+			// the checkpoint belongs to another version of the dump, its entries are updated or removed as vanished
+			transactionTemplate.executeWithoutResult(status -> checkpointRepository.deleteById(input));
+			checkpoint = newCheckpoint(input, source, null, null, importRun);
+		}
+		checkpoint.setEtag(download.validators().etag());
+		checkpoint.setLastModified(download.validators().lastModified());
+		ImportReport report = new ImportReport();
+		try (JsonlLineQueue lines = new JsonlLineQueue(download.in(), download.offset(), LINE_QUEUE_CAPACITY, dump.name())) {
+			importJsonlLines(lines, checkpoint, dump.fileName(), sink, report);
+		} catch (UncheckedIOException e) {
+			throw new IOException("Failed to download from " + dump.uri(), e.getCause());
+		}
+		log.info("Imported {} from {}: {}", dump.language(), dump.uri(), report);
+		return report;
+	}
+
+	/**
+	 * Kaikki dump of a language: the language as given, its name without spaces, hyphens and apostrophes,
+	 * the dump file name and its URL.
+	 */
+	private record KaikkiDump(String language, String name, String fileName, URI uri) {
+	}
+
+	private record DownloadedDump(KaikkiDump dump, DownloadCache.CachedFile cached, IOException failure) {
+	}
+
+	/**
+	 * Uncompressed content of a download starting at the given byte offset of the dump with the given validators.
+	 */
+	private record Download(InputStream in, long offset, KaikkiDownloadService.Validators validators) {
+	}
+
+	/**
+	 * Opens a download positioned at the given offset of its uncompressed content, or at its start when the dump
+	 * changed since the offset was reached. Plain dumps resume with a range request, compressed ones have to be
+	 * decompressed from the start and skipped up to the offset.
+	 */
+	private Download openDownload(URI uri, String fileName, long offset, KaikkiDownloadService.Validators validators)
+		throws IOException, InterruptedException {
+		if (!JsonlFiles.isCompressed(fileName)) {
+			KaikkiDownloadService.DownloadStream in = downloadService.open(uri, offset, validators);
+			return new Download(in, in.offset(), in.validators());
+		}
+		KaikkiDownloadService.DownloadStream raw = downloadService.open(uri, 0, validators);
+		try {
+			long start = offset;
+			if (start > 0 && !validators.isSameContent(raw.validators())) {
+				log.info("{} changed since {} bytes of it were imported, importing from the start", uri, offset);
+				start = 0;
 			}
-			log.info("Downloaded {} from {}", language, uri);
-			int imported = importJsonlFile(out);
-			totalImported += imported;
+			InputStream in = JsonlFiles.decompress(raw, fileName);
+			in.skipNBytes(start);
+			return new Download(in, start, raw.validators());
+		} catch (IOException e) {
+			raw.close();
+			throw e;
 		}
-		return totalImported;
 	}
 
-	private boolean processEntry(File file, String sourceLabel, String line, WiktionaryEntry entry) {
+	private WordDefinitionEntity toEntity(String name, String sourceLabel, String line) {
+		try {
+			return toEntity(sourceLabel != null ? sourceLabel : name, line);
+		} catch (JsonProcessingException e) {
+			// skip malformed lines but continue
+			log.debug("Skipping malformed line of {}: {}", name, e.getMessage());
+			return null;
+		}
+	}
+
+	private WordDefinitionEntity toEntity(String name, String sourceLabel, byte[] line) {
+		try {
+			return toEntity(sourceLabel != null ? sourceLabel : name, line);
+		} catch (IOException e) {
+			log.debug("Skipping malformed line of {}: {}", name, e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Converts a single JSONL line to a definition with its links.
+	 *
+	 * @return the definition or {@code null} for blank lines and entries without a word
+	 * @throws JsonProcessingException when the line is not a valid entry
+	 */
+	public WordDefinitionEntity toEntity(String source, String line) throws JsonProcessingException {
+		line = line.trim();
+		if (line.isEmpty())
+			return null;
+		return toEntity(source, mapper.readValue(line, WiktionaryEntry.class), line);
+	}
+
+	/**
+	 * Converts a single JSONL line given as raw UTF-8 bytes; the bytes are parsed directly
+	 * and decoded to a string only for the stored JSON.
+	 */
+	public WordDefinitionEntity toEntity(String source, byte[] line) throws IOException {
+		int start = 0;
+		int end = line.length;
+		while (start < end && line[start] <= ' ')
+			start++;
+		while (end > start && line[end - 1] <= ' ')
+			end--;
+		if (start == end)
+			return null;
+		return toEntity(source, mapper.readValue(line, start, end - start, WiktionaryEntry.class),
+			() -> new String(line, start, end - start, StandardCharsets.UTF_8));
+	}
+
+	private WordDefinitionEntity toEntity(String source, WiktionaryEntry entry, String json) {
+		return toEntity(source, entry, () -> json);
+	}
+
+	private WordDefinitionEntity toEntity(String source, WiktionaryEntry entry, Supplier<String> json) {
 		if (entry == null)
-			return true;
+			return null;
 		if (StringUtils.isBlank(entry.getWord()))
-			return true;
+			return null;
 		WordDefinitionEntity wordDefinitionEntity = new WordDefinitionEntity();
-		wordDefinitionEntity.setSource(sourceLabel != null ? sourceLabel : file.getName());
+		wordDefinitionEntity.setSource(source);
 		String language = Optional.of(entry)
 			.map(WiktionaryEntry::getLang_code)
 			.orElse(entry.getLang());
 		wordDefinitionEntity.setLanguage(language);
 		wordDefinitionEntity.setWord(entry.getWord());
+		wordDefinitionEntity.setNormalizedWord(WordIndexService.normalize(entry.getWord()));
 		wordDefinitionEntity.setType(entry.getPos());
 		wordDefinitionEntity.setLinks(extractSenses(entry, language));
-		wordDefinitionEntity.setJson(line);
-		if (wordDefinitionEntity.getWord() != null) {
-			repository.save(wordDefinitionEntity);
+		wordDefinitionEntity.setEntryData(WiktionaryEntryCodec.encode(entry));
+		if (!(store instanceof EmbeddedDefinitionStore)) {
+			// an embedded store keeps only the encoded entry, the JSON, its keys and its dictionaries are for the JPA store
+			wordDefinitionEntity.setJson(json.get());
+			wordDefinitionEntity.setEntryKey(entryKey(entry, language));
+			wordDefinitionEntity.setContentHash(sha256(wordDefinitionEntity.getJson()));
+			jsonCompression.compress(wordDefinitionEntity);
 		}
-		log.debug("Imported {} from {}", entry.getWord(), file.getName());
-		return false;
+		log.debug("Parsed {} from {}", entry.getWord(), source);
+		return wordDefinitionEntity;
 	}
 
 	private static Set<WordDefinitionLinkEntity> extractSenses(WiktionaryEntry entry, String language) {
@@ -266,6 +718,29 @@ import net.suteren.stardict.wiktionary2stardict.model.WiktionaryEntry;
 		}
 	}
 
+	/**
+	 * Digest of the natural key of an entry: language, word, part of speech, etymology number and the sense ids.
+	 * Senses without an id are represented by their glosses.
+	 */
+	private static String entryKey(WiktionaryEntry entry, String language) {
+		String senses = Optional.ofNullable(entry.getSenses())
+			.stream()
+			.flatMap(Collection::stream)
+			.map(sense -> sense.getId() != null ? sense.getId()
+				: String.join(UNIT_SEPARATOR, Optional.ofNullable(sense.getGlosses()).orElse(List.of())))
+			.collect(Collectors.joining(RECORD_SEPARATOR));
+		return sha256(String.join(KEY_SEPARATOR, language, entry.getWord(), String.valueOf(entry.getPos()),
+			String.valueOf(entry.getEtymology_number()), senses));
+	}
+
+	private static String sha256(String value) {
+		try {
+			return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 	private static Stream<String> cleanupTheMeaning(String word) {
 		Matcher m = EXPLANATION_PATTERN.matcher(word);
 		if (m.matches()) {
@@ -274,15 +749,4 @@ import net.suteren.stardict.wiktionary2stardict.model.WiktionaryEntry;
 			return Stream.of(word);
 		}
 	}
-
-	private WiktionaryEntry parseEntry(String line) {
-		WiktionaryEntry entry;
-		try {
-			entry = mapper.readValue(line, WiktionaryEntry.class);
-		} catch (Exception e) {
-			// skip malformed lines but continue
-			return null;
-		}
-		return entry;
-	}
 }
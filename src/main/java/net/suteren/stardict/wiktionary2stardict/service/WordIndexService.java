@@ -0,0 +1,122 @@
+package net.suteren.stardict.wiktionary2stardict.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.DefinitionWordEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.MaintenanceTaskEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.WordDefinitionEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.repository.MaintenanceTaskRepository;
+import net.suteren.stardict.wiktionary2stardict.jpa.repository.WordDefinitionRepository;
+
+/**
+ * Lookup index of definition words: the lower case word, indexed together with the language for prefix lookups,
+ * and the trigrams of the lower case word for infix lookups. Both are written along with the definitions;
+ * definitions stored before the index existed are indexed once the context is refreshed. No index serves the search
+ * for them, so the backfill records its completion and later starts skip it.
+ */
+@Slf4j
+@Service public class WordIndexService {
+
+	private static final int TRIGRAM = 3;
+	private static final int BACKFILL_BATCH_SIZE = 10_000;
+	private static final String BACKFILL_TASK = "word-index-backfill";
+
+	private final WordDefinitionRepository repository;
+	private final MaintenanceTaskRepository maintenanceTaskRepository;
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionTemplate transactionTemplate;
+
+	public WordIndexService(WordDefinitionRepository repository, MaintenanceTaskRepository maintenanceTaskRepository, JdbcTemplate jdbcTemplate,
+		PlatformTransactionManager transactionManager) {
+		this.repository = repository;
+		this.maintenanceTaskRepository = maintenanceTaskRepository;
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+	}
+
+	public static String normalize(String word) {
+		return word == null ? "" : word.strip().toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * @return distinct trigrams of the normalised word, in code points; none for a word shorter than a trigram
+	 */
+	public static Set<String> trigrams(String normalized) {
+		int[] codePoints = normalized.codePoints().toArray();
+		Set<String> trigrams = new LinkedHashSet<>();
+		for (int i = 0; i + TRIGRAM <= codePoints.length; i++) {
+			trigrams.add(new String(codePoints, i, TRIGRAM));
+		}
+		return trigrams;
+	}
+
+	/**
+	 * Escapes the wildcards of a {@code like} pattern, using {@code \} as the escape character.
+	 */
+	public static String escapeLike(String value) {
+		return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+	}
+
+	/**
+	 * Stores the trigrams of written definitions; called within the transaction which wrote them.
+	 */
+	public void index(Collection<? extends WordDefinitionEntity> definitions) {
+		List<Object[]> rows = new ArrayList<>();
+		for (WordDefinitionEntity definition : definitions) {
+			trigrams(definition.getNormalizedWord()).forEach(t -> rows.add(new Object[] { definition.getLanguage(), t, definition.getId() }));
+		}
+		if (!rows.isEmpty()) {
+			jdbcTemplate.batchUpdate("insert into word_trigram (language, trigram, definition_id) values (?, ?, ?)", rows);
+		}
+	}
+
+	@EventListener(ContextRefreshedEvent.class)
+	public void backfill() {
+		if (maintenanceTaskRepository.existsById(BACKFILL_TASK)) {
+			return;
+		}
+		long indexed = 0;
+		int batch;
+		do {
+			batch = transactionTemplate.execute(status -> backfillBatch());
+			indexed += batch;
+			if (batch > 0) {
+				log.info("Indexed words of {} definitions stored before the lookup index", indexed);
+			}
+		} while (batch == BACKFILL_BATCH_SIZE);
+		// every import writes the normalised word, so no definition without it can appear later
+		transactionTemplate.executeWithoutResult(status ->
+			maintenanceTaskRepository.save(new MaintenanceTaskEntity(BACKFILL_TASK, Instant.now())));
+	}
+
+	private int backfillBatch() {
+		List<DefinitionWordEntity> definitions = repository.findWithoutNormalizedWord(Limit.of(BACKFILL_BATCH_SIZE));
+		List<Object[]> words = new ArrayList<>(definitions.size());
+		List<Object[]> trigrams = new ArrayList<>();
+		for (DefinitionWordEntity definition : definitions) {
+			String normalized = normalize(definition.word());
+			words.add(new Object[] { normalized, definition.id() });
+			trigrams(normalized).forEach(t -> trigrams.add(new Object[] { definition.language(), t, definition.id() }));
+		}
+		if (!definitions.isEmpty()) {
+			jdbcTemplate.batchUpdate("update definition set normalized_word = ? where id = ?", words);
+			jdbcTemplate.batchUpdate("insert into word_trigram (language, trigram, definition_id) values (?, ?, ?)", trigrams);
+		}
+		return definitions.size();
+	}
+}
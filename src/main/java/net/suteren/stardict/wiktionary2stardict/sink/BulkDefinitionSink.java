@@ -0,0 +1,157 @@
+package net.suteren.stardict.wiktionary2stardict.sink;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Optional;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DataSourceUtils;
+
+import lombok.extern.slf4j.Slf4j;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.WordDefinitionEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.WordDefinitionLinkEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.WordTrigramEntity;
+import net.suteren.stardict.wiktionary2stardict.service.WordIndexService;
+
+/**
+ * Loads definitions, links and the word trigrams of the definitions (see {@link WordIndexService}) as CSV rows,
+ * bypassing JPA. Secondary indexes of the tables are dropped when the load starts and created again once all rows
+ * are in, so they are built once instead of being maintained on every insert. Indexes are kept when the table already
+ * holds data, because an incremental re-import looks the existing entries up while loading.
+ */
+@Slf4j
+abstract class BulkDefinitionSink implements DefinitionSink {
+
+	static final String DEFINITION_COLUMNS = "id, source, language, word, normalized_word, type, entry_key, content_hash, import_run, json, json_codec, json_dictionary_id, json_data, entry_data";
+	static final String LINK_COLUMNS = "id, gloss_id, language, type, word_definition_id";
+	static final String TRIGRAM_COLUMNS = "language, trigram, definition_id";
+
+	protected final BulkLoadSchema definitionSchema = BulkLoadSchema.of(WordDefinitionEntity.class);
+	protected final BulkLoadSchema linkSchema = BulkLoadSchema.of(WordDefinitionLinkEntity.class);
+	protected final BulkLoadSchema trigramSchema = BulkLoadSchema.of(WordTrigramEntity.class);
+	private final DataSource dataSource;
+	private final SequenceIdAllocator definitionIds;
+	private final SequenceIdAllocator linkIds;
+	private boolean deferringIndexes;
+
+	protected BulkDefinitionSink(DataSource dataSource) {
+		this.dataSource = dataSource;
+		this.definitionIds = new SequenceIdAllocator(nextValueSql(definitionSchema.sequence()), definitionSchema.allocationSize());
+		this.linkIds = new SequenceIdAllocator(nextValueSql(linkSchema.sequence()), linkSchema.allocationSize());
+	}
+
+	/**
+	 * @return query returning the next value of the given sequence
+	 */
+	protected abstract String nextValueSql(String sequence);
+
+	/**
+	 * Loads CSV rows (see {@link CsvRows}) into the given table.
+	 */
+	protected abstract void load(Connection connection, String table, String columns, String csv) throws SQLException;
+
+	@Override public void start() {
+		execute(connection -> {
+			if (hasRows(connection, definitionSchema.table())) {
+				log.info("{} is not empty, keeping its indexes for the bulk load", definitionSchema.table());
+				return;
+			}
+			log.info("Dropping secondary indexes of {}, {} and {} for the bulk load", definitionSchema.table(), linkSchema.table(),
+				trigramSchema.table());
+			executeAll(connection, trigramSchema.dropIndexStatements());
+			executeAll(connection, linkSchema.dropIndexStatements());
+			executeAll(connection, definitionSchema.dropIndexStatements());
+			deferringIndexes = true;
+		});
+	}
+
+	/**
+	 * Whether the load can take binary columns; otherwise the optional pre-parsed entry data is left out.
+	 */
+	protected boolean isLoadingBinary() {
+		return true;
+	}
+
+	@Override public boolean isDeferringIndexes() {
+		return deferringIndexes;
+	}
+
+	@Override public boolean isIndexingWords() {
+		return true;
+	}
+
+	@Override public void write(List<WordDefinitionEntity> definitions) {
+		execute(connection -> {
+			StringBuilder definitionRows = new StringBuilder();
+			StringBuilder linkRows = new StringBuilder();
+			StringBuilder trigramRows = new StringBuilder();
+			for (WordDefinitionEntity definition : definitions) {
+				definition.setId(definitionIds.next(connection));
+				CsvRows.append(definitionRows, definition.getId(), definition.getSource(), definition.getLanguage(), definition.getWord(),
+					definition.getNormalizedWord(), definition.getType(), definition.getEntryKey(), definition.getContentHash(),
+					definition.getImportRun(), definition.getJson(), definition.getJsonCodec(), definition.getJsonDictionaryId(),
+					definition.getJsonData(), isLoadingBinary() ? definition.getEntryData() : null);
+				for (WordDefinitionLinkEntity link : Optional.ofNullable(definition.getLinks()).orElse(List.of())) {
+					link.setId(linkIds.next(connection));
+					CsvRows.append(linkRows, link.getId(), link.getGlossId(), link.getLanguage(), link.getType().ordinal(), definition.getId());
+				}
+				for (String trigram : WordIndexService.trigrams(definition.getNormalizedWord())) {
+					CsvRows.append(trigramRows, definition.getLanguage(), trigram, definition.getId());
+				}
+			}
+			load(connection, definitionSchema.table(), DEFINITION_COLUMNS, definitionRows.toString());
+			load(connection, linkSchema.table(), LINK_COLUMNS, linkRows.toString());
+			load(connection, trigramSchema.table(), TRIGRAM_COLUMNS, trigramRows.toString());
+		});
+	}
+
+	@Override public void finish() {
+		execute(connection -> {
+			log.info("Creating secondary indexes of {}, {} and {}", definitionSchema.table(), linkSchema.table(), trigramSchema.table());
+			executeAll(connection, definitionSchema.createIndexStatements());
+			executeAll(connection, linkSchema.createIndexStatements());
+			executeAll(connection, trigramSchema.createIndexStatements());
+			afterLoad(connection);
+		});
+	}
+
+	/**
+	 * Hook for database specific work once the indexes are in place.
+	 */
+	protected void afterLoad(Connection connection) throws SQLException {}
+
+	private static boolean hasRows(Connection connection, String table) throws SQLException {
+		try (Statement statement = connection.createStatement();
+			ResultSet resultSet = statement.executeQuery("select 1 from " + table + " limit 1")) {
+			return resultSet.next();
+		}
+	}
+
+	protected static void executeAll(Connection connection, List<String> statements) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			for (String sql : statements) {
+				statement.execute(sql);
+			}
+		}
+	}
+
+	private void execute(SqlWork work) {
+		Connection connection = DataSourceUtils.getConnection(dataSource);
+		try {
+			work.execute(connection);
+		} catch (SQLException e) {
+			throw new IllegalStateException("Bulk load failed: " + e.getMessage(), e);
+		} finally {
+			DataSourceUtils.releaseConnection(connection, dataSource);
+		}
+	}
+
+	@FunctionalInterface
+	protected interface SqlWork {
+		void execute(Connection connection) throws SQLException;
+	}
+}
@@ -0,0 +1,44 @@
+package net.suteren.stardict.wiktionary2stardict.sink;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+
+/**
+ * Schema details of an entity needed to bypass JPA: table name, secondary indexes and id sequence ({@code null} for
+ * an entity without a generated id), taken from the mapping annotations so they stay in sync with the entities.
+ */
+record BulkLoadSchema(String table, List<Index> indexes, String sequence, int allocationSize) {
+
+	static BulkLoadSchema of(Class<?> entity) {
+		Table table = entity.getAnnotation(Table.class);
+		SequenceGenerator sequence = Arrays.stream(entity.getDeclaredFields())
+			.filter(field -> field.getName().equals("id"))
+			.map(field -> field.getAnnotation(SequenceGenerator.class))
+			.filter(Objects::nonNull)
+			.findFirst()
+			.orElse(null);
+		return new BulkLoadSchema(table.name(), Arrays.asList(table.indexes()), sequence != null ? sequence.sequenceName() : null,
+			sequence != null ? sequence.allocationSize() : 0);
+	}
+
+	List<String> dropIndexStatements() {
+		return indexes.stream()
+			.map(i -> "drop index if exists " + i.name())
+			.toList();
+	}
+
+	List<String> createIndexStatements() {
+		return indexes.stream()
+			.map(i -> "create %sindex if not exists %s on %s (%s)".formatted(i.unique() ? "unique " : "", i.name(), table,
+				Arrays.stream(i.columnList().split(","))
+					.map(String::strip)
+					.collect(Collectors.joining(", "))))
+			.toList();
+	}
+}
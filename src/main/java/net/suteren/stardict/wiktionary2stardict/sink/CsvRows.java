@@ -0,0 +1,38 @@
+package net.suteren.stardict.wiktionary2stardict.sink;
+
+import java.util.HexFormat;
+
+/**
+ * Appends rows in the CSV dialect understood by both PostgreSQL {@code COPY ... (FORMAT csv)} and H2 {@code CSVREAD}:
+ * strings are always quoted with embedded quotes doubled, numbers are written as is and {@code null} as the unquoted
+ * {@link #NULL} marker, so it cannot be mistaken for an empty string. Binary values are written in the PostgreSQL
+ * {@code bytea} hex format, H2 cannot read them.
+ */
+final class CsvRows {
+
+	/**
+	 * Unquoted field standing for {@code null}.
+	 */
+	static final String NULL = "\\N";
+
+	private CsvRows() {}
+
+	static void append(StringBuilder sb, Object... values) {
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			Object value = values[i];
+			if (value instanceof Number) {
+				sb.append(value);
+			} else if (value instanceof byte[] bytes) {
+				sb.append("\\x").append(HexFormat.of().formatHex(bytes));
+			} else if (value != null) {
+				sb.append('"').append(value.toString().replace("\"", "\"\"")).append('"');
+			} else {
+				sb.append(NULL);
+			}
+		}
+		sb.append('\n');
+	}
+}
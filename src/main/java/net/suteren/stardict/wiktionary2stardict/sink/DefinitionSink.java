@@ -0,0 +1,43 @@
+package net.suteren.stardict.wiktionary2stardict.sink;
+
+import java.util.List;
+
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.WordDefinitionEntity;
+
+/**
+ * Destination of imported definitions. All methods are called within a transaction,
+ * {@link #write(List)} once per imported chunk.
+ */
+public interface DefinitionSink {
+
+	/**
+	 * Prepares the storage before the first chunk is written.
+	 */
+	default void start() {}
+
+	/**
+	 * Stores a chunk of definitions together with their links. Ids are assigned to the given entities.
+	 */
+	void write(List<WordDefinitionEntity> definitions);
+
+	/**
+	 * Whether the secondary indexes are missing until {@link #finish()}; data derived from the written definitions
+	 * is then better built once the load is complete than maintained chunk by chunk.
+	 */
+	default boolean isDeferringIndexes() {
+		return false;
+	}
+
+	/**
+	 * Whether {@link #write(List)} stores the word trigrams of the definitions too; otherwise the caller indexes them
+	 * with {@code WordIndexService}.
+	 */
+	default boolean isIndexingWords() {
+		return false;
+	}
+
+	/**
+	 * Completes the import after the last chunk has been written.
+	 */
+	default void finish() {}
+}
@@ -0,0 +1,66 @@
+package net.suteren.stardict.wiktionary2stardict.sink;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.springframework.stereotype.Component;
+
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.JsonCodec;
+import net.suteren.stardict.wiktionary2stardict.jpa.repository.WordDefinitionRepository;
+import net.suteren.stardict.wiktionary2stardict.service.ImportProperties;
+
+/**
+ * Chooses the {@link DefinitionSink} for an import according to {@code wiktionary2stardict.import.sink}
+ * and the database in use.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component public class DefinitionSinkFactory {
+
+	private final ImportProperties importProperties;
+	private final DataSource dataSource;
+	private final WordDefinitionRepository repository;
+	private final EntityManager entityManager;
+
+	public DefinitionSink create() {
+		if (importProperties.getSink() == ImportProperties.SinkType.BULK) {
+			String database = getDatabaseProductName();
+			if ("PostgreSQL".equals(database)) {
+				log.info("Importing with PostgreSQL COPY");
+				return new PostgresCopyDefinitionSink(dataSource);
+			}
+			if ("H2".equals(database) && !isCompressingJson()) {
+				log.info("Importing with H2 CSVREAD staging files");
+				return new H2CsvDefinitionSink(dataSource);
+			}
+			// CSVREAD yields text only, so it cannot load compressed JSON
+			log.info("Bulk load is not supported on {} with {} JSON, importing with JDBC batches", database,
+				importProperties.getJsonCompression());
+		}
+		return new JpaDefinitionSink(repository, entityManager);
+	}
+
+	/**
+	 * @return sink persisting through JPA regardless of the configuration, e.g. for writers running concurrently
+	 */
+	public DefinitionSink createJpa() {
+		return new JpaDefinitionSink(repository, entityManager);
+	}
+
+	private boolean isCompressingJson() {
+		return importProperties.getJsonCompression() != null && importProperties.getJsonCompression() != JsonCodec.NONE;
+	}
+
+	private String getDatabaseProductName() {
+		try (Connection connection = dataSource.getConnection()) {
+			return connection.getMetaData().getDatabaseProductName();
+		} catch (SQLException e) {
+			throw new IllegalStateException("Failed to detect the database", e);
+		}
+	}
+}
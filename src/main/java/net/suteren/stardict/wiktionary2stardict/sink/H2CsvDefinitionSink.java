@@ -0,0 +1,81 @@
+package net.suteren.stardict.wiktionary2stardict.sink;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Loads rows into H2 by writing every chunk to a staging CSV file and ingesting it with
+ * {@code INSERT ... SELECT ... FROM CSVREAD}, which skips the per-row statement overhead.
+ */
+@Slf4j
+class H2CsvDefinitionSink extends BulkDefinitionSink {
+
+	private final Path stagingDirectory;
+
+	H2CsvDefinitionSink(DataSource dataSource) {
+		super(dataSource);
+		try {
+			this.stagingDirectory = Files.createTempDirectory("wiktionary-staging-");
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to create the staging directory", e);
+		}
+	}
+
+	@Override protected String nextValueSql(String sequence) {
+		return "select next value for " + sequence;
+	}
+
+	/**
+	 * CSVREAD yields text only; definitions loaded without entry data are exported from their JSON.
+	 */
+	@Override protected boolean isLoadingBinary() {
+		return false;
+	}
+
+	@Override protected void load(Connection connection, String table, String columns, String csv) throws SQLException {
+		if (csv.isEmpty()) {
+			return;
+		}
+		Path staging = stagingDirectory.resolve(table + ".csv");
+		try {
+			Files.writeString(staging, csv, StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new SQLException("Failed to write staging file " + staging, e);
+		}
+		String[] columnNames = Arrays.stream(columns.split(","))
+			.map(c -> c.strip().toUpperCase(Locale.ROOT))
+			.toArray(String[]::new);
+		// CSVREAD yields every column as text; null comes as its marker, so an empty string stays empty
+		String select = Arrays.stream(columnNames)
+			.map(c -> "nullif(%s, '%s')".formatted(c, CsvRows.NULL))
+			.collect(Collectors.joining(", "));
+		try (Statement statement = connection.createStatement()) {
+			statement.executeUpdate("insert into %s (%s) select %s from csvread('%s', '%s', 'charset=UTF-8')"
+				.formatted(table, columns, select, staging.toAbsolutePath().toString().replace("'", "''"), String.join(",", columnNames)));
+		}
+	}
+
+	@Override protected void afterLoad(Connection connection) throws SQLException {
+		try {
+			Files.deleteIfExists(stagingDirectory.resolve(definitionSchema.table() + ".csv"));
+			Files.deleteIfExists(stagingDirectory.resolve(linkSchema.table() + ".csv"));
+			Files.deleteIfExists(stagingDirectory.resolve(trigramSchema.table() + ".csv"));
+			Files.deleteIfExists(stagingDirectory);
+		} catch (IOException e) {
+			log.warn("Failed to remove staging directory {}: {}", stagingDirectory, e.getMessage());
+		}
+	}
+}
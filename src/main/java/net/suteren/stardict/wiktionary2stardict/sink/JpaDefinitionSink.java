@@ -0,0 +1,28 @@
+package net.suteren.stardict.wiktionary2stardict.sink;
+
+import java.util.List;
+
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.WordDefinitionEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.repository.WordDefinitionRepository;
+
+/**
+ * Persists definitions through JPA using JDBC batching; works on every database.
+ */
+@RequiredArgsConstructor
+class JpaDefinitionSink implements DefinitionSink {
+
+	private final WordDefinitionRepository repository;
+	private final EntityManager entityManager;
+
+	/**
+	 * Persists the chunk as JDBC batches and detaches it right away, so the persistence context does not grow
+	 * with the number of imported entries.
+	 */
+	@Override public void write(List<WordDefinitionEntity> definitions) {
+		repository.saveAll(definitions);
+		entityManager.flush();
+		entityManager.clear();
+	}
+}
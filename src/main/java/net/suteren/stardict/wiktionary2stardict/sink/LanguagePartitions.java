@@ -0,0 +1,219 @@
+package net.suteren.stardict.wiktionary2stardict.sink;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.WordDefinitionEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.WordDefinitionLinkEntity;
+import net.suteren.stardict.wiktionary2stardict.service.ImportProperties;
+
+/**
+ * Declarative list partitioning of definitions and links by language on PostgreSQL, enabled by
+ * {@link ImportProperties#isPartitionByLanguage()}. Once the context is refreshed, plain tables are converted
+ * to partitioned ones with a partition per stored language and a default partition for entries without a language.
+ * The unique key of a partitioned table has to contain the language, so links, translation pairs and word trigrams
+ * reference definitions by id and language. Partitions of new languages are created by {@link #ensurePartitions}
+ * before the first chunk of the language is written, and a source owning whole partitions is removed by dropping them,
+ * see {@link #dropPartitionsOf}.
+ */
+@Slf4j
+@Component public class LanguagePartitions {
+
+	private static final int MAX_SUFFIX_LENGTH = 40;
+
+	private final ImportProperties importProperties;
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionTemplate transactionTemplate;
+	private final BulkLoadSchema definitionSchema = BulkLoadSchema.of(WordDefinitionEntity.class);
+	private final BulkLoadSchema linkSchema = BulkLoadSchema.of(WordDefinitionLinkEntity.class);
+	private final Set<String> languages = ConcurrentHashMap.newKeySet();
+	private volatile boolean active;
+
+	public LanguagePartitions(ImportProperties importProperties, JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+		this.importProperties = importProperties;
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+	}
+
+	@EventListener(ContextRefreshedEvent.class)
+	public void partition() {
+		if (!importProperties.isPartitionByLanguage()) {
+			return;
+		}
+		String database = jdbcTemplate.execute((ConnectionCallback<String>) LanguagePartitions::getDatabaseProductName);
+		if (!"PostgreSQL".equals(database)) {
+			log.warn("Partitioning by language is not supported on {}, keeping plain tables", database);
+			return;
+		}
+		if (!isPartitioned(definitionSchema.table())) {
+			transactionTemplate.executeWithoutResult(status -> convert());
+		}
+		active = true;
+	}
+
+	/**
+	 * Creates the partitions of the languages of the given definitions which have none yet. Commits on its own,
+	 * so it has to be called before the transaction writing the definitions touches the partitioned tables
+	 * (see {@link net.suteren.stardict.wiktionary2stardict.service.ImportConnectionPool} for the connection it takes).
+	 */
+	public synchronized void ensurePartitions(Collection<? extends WordDefinitionEntity> definitions) {
+		if (!active) {
+			return;
+		}
+		List<String> missing = definitions.stream()
+			.map(WordDefinitionEntity::getLanguage)
+			.filter(Objects::nonNull)
+			.distinct()
+			.filter(language -> !languages.contains(language))
+			.toList();
+		if (!missing.isEmpty()) {
+			transactionTemplate.executeWithoutResult(status -> missing.forEach(this::createPartitions));
+			languages.addAll(missing);
+		}
+	}
+
+	/**
+	 * Drops the partitions of the languages whose definitions all come from the given source, together with
+	 * the translation pairs and word trigrams of those languages, and creates them again empty. Definitions
+	 * of the source sharing a partition with other sources are left to be deleted row by row.
+	 * Must not be called within a transaction which read the partitioned tables.
+	 *
+	 * @return number of dropped definitions
+	 */
+	public synchronized long dropPartitionsOf(String source) {
+		if (!active) {
+			return 0;
+		}
+		long dropped = 0;
+		for (String language : jdbcTemplate.queryForList("select distinct language from definition where source = ? and language is not null",
+			String.class, source)) {
+			if (!exists(partitionName(definitionSchema.table(), language))) {
+				log.info("No partition of {} yet, deleting its entries from {} row by row", language, source);
+				continue;
+			}
+			if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+				"select exists (select 1 from definition where language = ? and (source <> ? or source is null))", Boolean.class,
+				language, source))) {
+				log.info("Partition of {} holds other sources than {}, deleting its entries row by row", language, source);
+				continue;
+			}
+			log.info("Dropping the partitions of {} imported from {}", language, source);
+			dropped += transactionTemplate.execute(status -> {
+				Long rows = jdbcTemplate.queryForObject("select count(*) from " + partitionName(definitionSchema.table(), language), Long.class);
+				jdbcTemplate.update("delete from translation_pair where from_lang = ? or to_lang = ?", language, language);
+				jdbcTemplate.update("delete from word_trigram where language = ?", language);
+				jdbcTemplate.execute("drop table if exists " + partitionName(linkSchema.table(), language));
+				jdbcTemplate.execute("alter table %s detach partition %s".formatted(definitionSchema.table(),
+					partitionName(definitionSchema.table(), language)));
+				jdbcTemplate.execute("drop table " + partitionName(definitionSchema.table(), language));
+				createPartitions(language);
+				return rows;
+			});
+		}
+		return dropped;
+	}
+
+	/**
+	 * Moves the plain tables aside, creates the partitioned ones in their place, copies the rows over and drops
+	 * the plain tables. The foreign keys of the tables referencing definitions are replaced by ones including
+	 * the language, under the same names.
+	 */
+	private void convert() {
+		String definition = definitionSchema.table();
+		String link = linkSchema.table();
+		log.info("Partitioning {} and {} by language", definition, link);
+		jdbcTemplate.execute("alter table translation_pair drop constraint if exists fk_translation_pair_source");
+		jdbcTemplate.execute("alter table translation_pair drop constraint if exists fk_translation_pair_target");
+		jdbcTemplate.execute("alter table word_trigram drop constraint if exists fk_word_trigram_definition");
+		jdbcTemplate.execute("alter table %s drop constraint if exists fk_link_word_definition".formatted(link));
+		for (String table : List.of(definition, link)) {
+			jdbcTemplate.execute("alter table %s rename to %s_unpartitioned".formatted(table, table));
+			jdbcTemplate.execute("""
+				create table %1$s (like %1$s_unpartitioned including defaults, constraint uk_%1$s_id_language unique (id, language))
+				partition by list (language)
+				""".formatted(table));
+			jdbcTemplate.execute("create table %1$s_default partition of %1$s default".formatted(table));
+		}
+		List<String> stored = jdbcTemplate.queryForList("""
+			select language from %s_unpartitioned where language is not null
+			union
+			select language from %s_unpartitioned where language is not null
+			""".formatted(definition, link), String.class);
+		stored.forEach(this::createPartitions);
+		for (String table : List.of(definition, link)) {
+			int rows = jdbcTemplate.update("insert into %1$s select * from %1$s_unpartitioned".formatted(table));
+			log.info("Moved {} rows of {} to {} partitions", rows, table, stored.size());
+		}
+		jdbcTemplate.execute("drop table %s_unpartitioned".formatted(link));
+		jdbcTemplate.execute("drop table %s_unpartitioned".formatted(definition));
+		definitionSchema.createIndexStatements().forEach(jdbcTemplate::execute);
+		linkSchema.createIndexStatements().forEach(jdbcTemplate::execute);
+		jdbcTemplate.execute("""
+			alter table %s add constraint fk_link_word_definition
+			foreign key (word_definition_id, language) references %s (id, language)
+			""".formatted(link, definition));
+		jdbcTemplate.execute("""
+			alter table translation_pair add constraint fk_translation_pair_source
+			foreign key (source_id, from_lang) references %s (id, language) on delete cascade
+			""".formatted(definition));
+		jdbcTemplate.execute("""
+			alter table translation_pair add constraint fk_translation_pair_target
+			foreign key (target_id, to_lang) references %s (id, language) on delete cascade
+			""".formatted(definition));
+		jdbcTemplate.execute("""
+			alter table word_trigram add constraint fk_word_trigram_definition
+			foreign key (definition_id, language) references %s (id, language) on delete cascade
+			""".formatted(definition));
+		languages.addAll(stored);
+	}
+
+	private void createPartitions(String language) {
+		String value = "'" + language.replace("'", "''") + "'";
+		for (String table : List.of(definitionSchema.table(), linkSchema.table())) {
+			jdbcTemplate.execute("create table if not exists %s partition of %s for values in (%s)"
+				.formatted(partitionName(table, language), table, value));
+		}
+	}
+
+	/**
+	 * @return name of the partition of the table holding the language; languages differing only in characters
+	 * not allowed in a plain identifier get distinct names by a hash suffix
+	 */
+	private static String partitionName(String table, String language) {
+		String suffix = language.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]", "_");
+		if (!suffix.equals(language) || suffix.length() > MAX_SUFFIX_LENGTH) {
+			suffix = suffix.substring(0, Math.min(suffix.length(), MAX_SUFFIX_LENGTH)) + "_" + Integer.toHexString(language.hashCode());
+		}
+		return table + "_lang_" + suffix;
+	}
+
+	private boolean exists(String table) {
+		return Boolean.TRUE.equals(jdbcTemplate.queryForObject("select to_regclass(?) is not null", Boolean.class, table));
+	}
+
+	private boolean isPartitioned(String table) {
+		return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+			"select exists (select 1 from pg_class where oid = to_regclass(?) and relkind = 'p')", Boolean.class, table));
+	}
+
+	private static String getDatabaseProductName(Connection connection) throws SQLException {
+		return connection.getMetaData().getDatabaseProductName();
+	}
+}
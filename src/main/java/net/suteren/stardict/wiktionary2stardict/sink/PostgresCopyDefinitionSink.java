@@ -0,0 +1,43 @@
+package net.suteren.stardict.wiktionary2stardict.sink;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+/**
+ * Streams rows into PostgreSQL with {@code COPY ... FROM STDIN}, which is far faster than row by row inserts.
+ */
+class PostgresCopyDefinitionSink extends BulkDefinitionSink {
+
+	PostgresCopyDefinitionSink(DataSource dataSource) {
+		super(dataSource);
+	}
+
+	@Override protected String nextValueSql(String sequence) {
+		return "select nextval('%s')".formatted(sequence);
+	}
+
+	@Override protected void load(Connection connection, String table, String columns, String csv) throws SQLException {
+		if (csv.isEmpty()) {
+			return;
+		}
+		CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+		try {
+			// the null marker matches unquoted fields only, quoted ones are strings
+			copyManager.copyIn("COPY %s (%s) FROM STDIN WITH (FORMAT csv, NULL '%s')".formatted(table, columns, CsvRows.NULL), new StringReader(csv));
+		} catch (IOException e) {
+			throw new SQLException("COPY into " + table + " failed", e);
+		}
+	}
+
+	@Override protected void afterLoad(Connection connection) throws SQLException {
+		executeAll(connection, List.of("analyze " + definitionSchema.table(), "analyze " + linkSchema.table(), "analyze " + trigramSchema.table()));
+	}
+}
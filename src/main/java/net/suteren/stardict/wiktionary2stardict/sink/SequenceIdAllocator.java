@@ -0,0 +1,34 @@
+package net.suteren.stardict.wiktionary2stardict.sink;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Hands out ids from a database sequence in blocks of its increment, interpreting every sequence value
+ * as the lowest id of a block, the same way Hibernate's {@code pooled-lo} optimizer does.
+ */
+class SequenceIdAllocator {
+
+	private final String nextValueSql;
+	private final int allocationSize;
+	private long next;
+	private long limit;
+
+	SequenceIdAllocator(String nextValueSql, int allocationSize) {
+		this.nextValueSql = nextValueSql;
+		this.allocationSize = allocationSize;
+	}
+
+	long next(Connection connection) throws SQLException {
+		if (next >= limit) {
+			try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(nextValueSql)) {
+				resultSet.next();
+				next = resultSet.getLong(1);
+				limit = next + allocationSize;
+			}
+		}
+		return next++;
+	}
+}
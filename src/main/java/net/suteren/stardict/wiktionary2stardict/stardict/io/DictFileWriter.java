@@ -4,6 +4,8 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -45,6 +47,30 @@ public class DictFileWriter implements AutoCloseable {
 		return getIdxEntries();
 	}
 
+	/**
+	 * Writes definitions which come ordered by word, merging the adjacent definitions of a word into one record,
+	 * so only the definitions of a single word are held in memory at a time.
+	 */
+	public List<IdxEntry> writeOrderedDefinitionFile(Stream<WordDefinition> definitions) throws IOException {
+		String word = null;
+		Set<DefinitionEntry> entries = new HashSet<>();
+		Iterator<WordDefinition> iterator = definitions.iterator();
+		while (iterator.hasNext()) {
+			WordDefinition definition = iterator.next();
+			if (word != null && !word.equals(definition.getWord())) {
+				writeWordDefinition(new WordDefinition(word, entries));
+				entries = new HashSet<>();
+			}
+			word = definition.getWord();
+			entries.addAll(definition.getDefinitions());
+		}
+		if (word != null) {
+			writeWordDefinition(new WordDefinition(word, entries));
+		}
+		this.size = currentOffset.get();
+		return getIdxEntries();
+	}
+
 	public int writeWordDefinition(WordDefinition wordDef) throws IOException {
 		int size = 0;
 		for (DefinitionEntry definitionEntry : wordDef.getDefinitions()) {
@@ -0,0 +1,42 @@
+package net.suteren.stardict.wiktionary2stardict.store;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.LanguageCombinationEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.TranslationRowEntity;
+import net.suteren.stardict.wiktionary2stardict.model.WiktionaryEntry;
+
+/**
+ * Storage of imported definitions as the export and the cleanup see it, selected by {@link StorageProperties#getType()}.
+ * Stores written without the JPA import pipeline implement {@link EmbeddedDefinitionStore}.
+ */
+public interface DefinitionStore {
+
+	/**
+	 * Language combinations having translations, the most translated first.
+	 *
+	 * @param langCodeFrom source language or {@code null} for any
+	 * @param langCodeTo target language or {@code null} for any
+	 */
+	List<LanguageCombinationEntity> findLanguageCombinations(String langCodeFrom, String langCodeTo);
+
+	/**
+	 * Translations from one language to another ordered by the source word; the stream has to be closed.
+	 */
+	Stream<TranslationRowEntity> streamTranslations(String langCodeFrom, String langCodeTo);
+
+	/**
+	 * Entries of the given definitions as far as the renderers need them; definitions not found or not readable are left out.
+	 */
+	Map<Long, WiktionaryEntry> findEntries(Collection<Long> ids);
+
+	/**
+	 * Deletes the definitions of the given sources, all definitions when none is given.
+	 *
+	 * @return number of deleted definitions
+	 */
+	long deleteSources(Collection<String> sources);
+}
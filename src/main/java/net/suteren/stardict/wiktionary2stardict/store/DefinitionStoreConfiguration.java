@@ -0,0 +1,32 @@
+package net.suteren.stardict.wiktionary2stardict.store;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.extern.slf4j.Slf4j;
+import net.suteren.stardict.wiktionary2stardict.jpa.repository.LanguagePairStatsRepository;
+import net.suteren.stardict.wiktionary2stardict.jpa.repository.TranslationPairRepository;
+import net.suteren.stardict.wiktionary2stardict.jpa.repository.WordDefinitionRepository;
+import net.suteren.stardict.wiktionary2stardict.service.DefinitionCleanupService;
+import net.suteren.stardict.wiktionary2stardict.service.JsonCompressionService;
+
+/**
+ * Creates the {@link DefinitionStore} chosen by {@code wiktionary2stardict.storage.type}.
+ */
+@Slf4j
+@Configuration
+public class DefinitionStoreConfiguration {
+
+	@Bean
+	public DefinitionStore definitionStore(StorageProperties storageProperties, WordDefinitionRepository repository,
+		TranslationPairRepository pairRepository, LanguagePairStatsRepository statsRepository, JsonCompressionService jsonCompression,
+		DefinitionCleanupService cleanupService) {
+		return switch (storageProperties.getType()) {
+			case JPA -> new JpaDefinitionStore(repository, pairRepository, statsRepository, jsonCompression, cleanupService);
+			case SEGMENTS -> {
+				log.info("Storing definitions in segment files under {}", storageProperties.getDirectory());
+				yield new SegmentDefinitionStore(storageProperties.getDirectory());
+			}
+		};
+	}
+}
@@ -0,0 +1,37 @@
+package net.suteren.stardict.wiktionary2stardict.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.WordDefinitionEntity;
+
+/**
+ * {@link DefinitionStore} written directly by the import instead of through JPA. A source is always imported
+ * as a whole: its new definitions replace the stored ones once the import of the source is committed.
+ */
+public interface EmbeddedDefinitionStore extends DefinitionStore {
+
+	/**
+	 * Starts the import of a source; closing the writer without committing discards what it wrote.
+	 */
+	SourceWriter openSource(String source) throws IOException;
+
+	/**
+	 * Whether definitions of the source are stored.
+	 */
+	boolean containsSource(String source);
+
+	interface SourceWriter extends Closeable {
+
+		/**
+		 * Appends parsed definitions with the words of their links.
+		 */
+		void write(List<WordDefinitionEntity> definitions) throws IOException;
+
+		/**
+		 * Makes the written definitions visible in place of the previous ones of the source.
+		 */
+		void commit() throws IOException;
+	}
+}
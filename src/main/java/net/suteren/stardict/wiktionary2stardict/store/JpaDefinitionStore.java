@@ -0,0 +1,113 @@
+package net.suteren.stardict.wiktionary2stardict.store;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+import net.suteren.stardict.wiktionary2stardict.converter.WiktionaryEntryCodec;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.LanguageCombinationEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.TranslationRowEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.repository.LanguagePairStatsRepository;
+import net.suteren.stardict.wiktionary2stardict.jpa.repository.TranslationPairRepository;
+import net.suteren.stardict.wiktionary2stardict.jpa.repository.WordDefinitionRepository;
+import net.suteren.stardict.wiktionary2stardict.model.WiktionaryEntry;
+import net.suteren.stardict.wiktionary2stardict.service.DefinitionCleanupService;
+import net.suteren.stardict.wiktionary2stardict.service.JsonCompressionService;
+
+/**
+ * {@link DefinitionStore} of the JPA entities: translations come from the materialised translation pairs,
+ * language combinations from their statistics and entries from their pre-parsed form or, for definitions
+ * imported before it existed, from their JSON. Reads have to run within a transaction.
+ */
+@Slf4j
+public class JpaDefinitionStore implements DefinitionStore {
+
+	private final WordDefinitionRepository repository;
+	private final TranslationPairRepository pairRepository;
+	private final LanguagePairStatsRepository statsRepository;
+	private final JsonCompressionService jsonCompression;
+	private final DefinitionCleanupService cleanupService;
+	private final ObjectMapper mapper;
+
+	public JpaDefinitionStore(WordDefinitionRepository repository, TranslationPairRepository pairRepository,
+		LanguagePairStatsRepository statsRepository, JsonCompressionService jsonCompression, DefinitionCleanupService cleanupService) {
+		this.repository = repository;
+		this.pairRepository = pairRepository;
+		this.statsRepository = statsRepository;
+		this.jsonCompression = jsonCompression;
+		this.cleanupService = cleanupService;
+		this.mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+	}
+
+	@Override public List<LanguageCombinationEntity> findLanguageCombinations(String langCodeFrom, String langCodeTo) {
+		if (langCodeFrom != null && langCodeTo != null) {
+			return statsRepository.findLanguageCombinationsFrom(langCodeFrom).stream()
+				.filter(lc -> langCodeTo.equals(lc.to()))
+				.toList();
+		} else if (langCodeFrom != null) {
+			return statsRepository.findLanguageCombinationsFrom(langCodeFrom);
+		} else if (langCodeTo != null) {
+			return statsRepository.findLanguageCombinationsTo(langCodeTo);
+		}
+		return statsRepository.findLanguageCombinations();
+	}
+
+	@Override public Stream<TranslationRowEntity> streamTranslations(String langCodeFrom, String langCodeTo) {
+		return pairRepository.streamTranslations(langCodeFrom, langCodeTo);
+	}
+
+	@Override public Map<Long, WiktionaryEntry> findEntries(Collection<Long> ids) {
+		Map<Long, WiktionaryEntry> entries = new HashMap<>();
+		repository.findEntryDataByIds(ids)
+			.forEach(d -> entries.put(d.id(), decodeWiktionaryEntry(d.entryData())));
+		Set<Long> unparsed = entries.entrySet().stream()
+			.filter(e -> e.getValue() == null)
+			.map(Map.Entry::getKey)
+			.collect(Collectors.toSet());
+		if (!unparsed.isEmpty()) {
+			repository.findJsonByIds(unparsed)
+				.forEach(d -> entries.put(d.id(), parseWiktionaryEntry(jsonCompression.json(d))));
+		}
+		entries.values().removeIf(Objects::isNull);
+		return entries;
+	}
+
+	@Override public long deleteSources(Collection<String> sources) {
+		long count;
+		if (sources == null || sources.isEmpty()) {
+			count = cleanupService.deleteAll();
+		} else {
+			count = sources.stream()
+				.mapToLong(cleanupService::deleteSource)
+				.sum();
+		}
+		statsRepository.refresh();
+		return count;
+	}
+
+	private static WiktionaryEntry decodeWiktionaryEntry(byte[] entryData) {
+		try {
+			return WiktionaryEntryCodec.decode(entryData);
+		} catch (IllegalArgumentException ex) {
+			log.debug("Falling back to the JSON: {}", ex.getMessage());
+			return null;
+		}
+	}
+
+	private WiktionaryEntry parseWiktionaryEntry(String json) {
+		try {
+			return mapper.readValue(json, WiktionaryEntry.class);
+		} catch (Exception ex) {
+			return null;
+		}
+	}
+}
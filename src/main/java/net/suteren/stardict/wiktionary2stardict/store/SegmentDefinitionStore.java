@@ -0,0 +1,510 @@
+package net.suteren.stardict.wiktionary2stardict.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import lombok.extern.slf4j.Slf4j;
+import net.suteren.stardict.wiktionary2stardict.converter.WiktionaryEntryCodec;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.LanguageCombinationEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.LinkType;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.TranslationRowEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.WordDefinitionEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.WordDefinitionLinkEntity;
+import net.suteren.stardict.wiktionary2stardict.model.WiktionaryEntry;
+
+/**
+ * {@link EmbeddedDefinitionStore} of append-only segment files, for one-shot conversions without Hibernate and its
+ * secondary indexes. Every import of a source writes a new segment holding, per definition, its language, word,
+ * part of speech, the gloss ids of its meaning links and its pre-parsed entry (see {@link WiktionaryEntryCodec});
+ * once committed, the segment replaces the previous one of the source. Link words are interned by an in-memory hash
+ * index of glosses backed by an append-only file, so gloss ids stay stable across imports.
+ * <p>
+ * Translation pairs are derived from the glosses, with the same rules as the JPA store: definitions sharing
+ * a meaning gloss translate each other when they have the same part of speech other than a name and different
+ * languages. The first read after an import indexes all definitions without their entries in memory; entries are read
+ * from the segments by their offsets. A definition id is the number of its segment in the upper bits and the offset
+ * of its record in the lower ones.
+ */
+@Slf4j
+public class SegmentDefinitionStore implements EmbeddedDefinitionStore, Closeable {
+
+	private static final String SEGMENT_PREFIX = "segment-";
+	private static final String SEGMENT_SUFFIX = ".seg";
+	private static final String TEMPORARY_SUFFIX = ".tmp";
+	private static final String GLOSS_FILE = "glosses.dat";
+	/** "W2SS" */
+	private static final int MAGIC = 0x57325353;
+	private static final byte VERSION = 1;
+	/** Offset of the definition count in the segment header, patched once the segment is complete. */
+	private static final int COUNT_OFFSET = Integer.BYTES + Byte.BYTES;
+	private static final int OFFSET_BITS = 40;
+	private static final String NAME_TYPE = "name";
+	/** Longest gloss surely fitting the 64 KiB limit of {@link DataOutputStream#writeUTF}; longer ones are no translations anyway. */
+	private static final int MAX_GLOSS_LENGTH = 0xFFFF / 3;
+
+	private final Path directory;
+	private final Map<String, Integer> glossIds = new HashMap<>();
+	private final Map<String, Segment> segments = new HashMap<>();
+	private final Map<Integer, FileChannel> channels = new HashMap<>();
+	private FileChannel glossChannel;
+	private DataOutputStream glossOut;
+	private int nextSegment;
+	private boolean opened;
+	private Index index;
+
+	public SegmentDefinitionStore(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Committed segment of a source.
+	 */
+	private record Segment(int number, String source, long count, Path path) {
+	}
+
+	/**
+	 * Definition as indexed in memory; its entry is {@code entryLength} bytes at {@code entryOffset} of its segment.
+	 */
+	private record Definition(long id, String language, String word, String type, int[] glosses, long entryOffset, int entryLength) {
+
+		int segment() {
+			return (int) (id >>> OFFSET_BITS);
+		}
+
+		boolean translates(Definition other) {
+			return type != null && !NAME_TYPE.equals(type) && type.equals(other.type)
+				&& language != null && other.language != null && !language.equals(other.language);
+		}
+	}
+
+	/**
+	 * Definitions by id, by language and by meaning gloss.
+	 */
+	private record Index(Map<Long, Definition> byId, Map<String, List<Definition>> byLanguage, Map<Integer, List<Definition>> byGloss) {
+	}
+
+	@Override public synchronized SourceWriter openSource(String source) throws IOException {
+		open();
+		Path path = directory.resolve(SEGMENT_PREFIX + nextSegment + SEGMENT_SUFFIX + TEMPORARY_SUFFIX);
+		return new SegmentWriter(nextSegment++, source, path);
+	}
+
+	@Override public synchronized boolean containsSource(String source) {
+		openUnchecked();
+		return segments.containsKey(source);
+	}
+
+	@Override public synchronized List<LanguageCombinationEntity> findLanguageCombinations(String langCodeFrom, String langCodeTo) {
+		Index index = index();
+		Map<LanguageCombinationEntity, Long> pairs = new HashMap<>();
+		index.byLanguage().entrySet().stream()
+			.filter(e -> langCodeFrom == null || langCodeFrom.equals(e.getKey()))
+			.flatMap(e -> e.getValue().stream())
+			.forEach(source -> translations(index, source, langCodeTo)
+				.forEach(target -> pairs.merge(new LanguageCombinationEntity(source.language(), target.language()), 1L, Long::sum)));
+		return pairs.entrySet().stream()
+			.sorted(Map.Entry.<LanguageCombinationEntity, Long>comparingByValue().reversed())
+			.map(Map.Entry::getKey)
+			.toList();
+	}
+
+	@Override public synchronized Stream<TranslationRowEntity> streamTranslations(String langCodeFrom, String langCodeTo) {
+		Index index = index();
+		return index.byLanguage().getOrDefault(langCodeFrom, List.of()).stream()
+			.sorted(Comparator.comparing(Definition::word))
+			.flatMap(source -> translations(index, source, langCodeTo).stream()
+				.map(target -> new TranslationRowEntity(source.word(), target.id(), target.word())));
+	}
+
+	@Override public synchronized Map<Long, WiktionaryEntry> findEntries(Collection<Long> ids) {
+		Index index = index();
+		Map<Long, WiktionaryEntry> entries = new HashMap<>();
+		for (Long id : ids) {
+			Definition definition = index.byId().get(id);
+			if (definition == null || definition.entryLength() == 0) {
+				continue;
+			}
+			try {
+				WiktionaryEntry entry = WiktionaryEntryCodec.decode(readEntry(definition));
+				if (entry != null) {
+					entries.put(id, entry);
+				}
+			} catch (IOException | IllegalArgumentException e) {
+				log.warn("Failed to read the entry of definition {}: {}", id, e.getMessage());
+			}
+		}
+		return entries;
+	}
+
+	@Override public synchronized long deleteSources(Collection<String> sources) {
+		openUnchecked();
+		List<Segment> deleted = segments.values().stream()
+			.filter(segment -> sources == null || sources.isEmpty() || sources.contains(segment.source()))
+			.toList();
+		long count = 0;
+		for (Segment segment : deleted) {
+			try {
+				delete(segment);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Failed to delete the segment of " + segment.source(), e);
+			}
+			count += segment.count();
+		}
+		return count;
+	}
+
+	@Override public synchronized void close() throws IOException {
+		closeChannels();
+		if (glossOut != null) {
+			glossOut.close();
+			glossOut = null;
+			glossChannel = null;
+		}
+	}
+
+	/**
+	 * Loads the glosses and the segment headers, removing leftovers of interrupted imports.
+	 */
+	private void open() throws IOException {
+		if (opened) {
+			return;
+		}
+		Files.createDirectories(directory);
+		List<Segment> found = new ArrayList<>();
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : files.toList()) {
+				String name = file.getFileName().toString();
+				if (name.endsWith(TEMPORARY_SUFFIX)) {
+					Files.delete(file);
+				} else if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+					found.add(readHeader(file));
+				}
+			}
+		}
+		found.sort(Comparator.comparingInt(Segment::number));
+		for (Segment segment : found) {
+			// a replaced segment is left behind when the import stopped between the commit and the cleanup
+			Segment replaced = segments.put(segment.source(), segment);
+			if (replaced != null) {
+				Files.delete(replaced.path());
+			}
+			nextSegment = segment.number() + 1;
+		}
+		loadGlosses();
+		opened = true;
+		log.info("Opened {} segments with {} glosses in {}", segments.size(), glossIds.size(), directory);
+	}
+
+	private void openUnchecked() {
+		try {
+			open();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to open the segments in " + directory, e);
+		}
+	}
+
+	private static Segment readHeader(Path path) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+			return readHeader(in, path);
+		}
+	}
+
+	private static Segment readHeader(DataInputStream in, Path path) throws IOException {
+		if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+			throw new IOException("Not a segment of a supported version: " + path);
+		}
+		long count = in.readLong();
+		String source = in.readUTF();
+		String name = path.getFileName().toString();
+		int number = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+		return new Segment(number, source, count, path);
+	}
+
+	/**
+	 * Reads the interned glosses; a gloss torn by an interrupted write is cut off.
+	 */
+	private void loadGlosses() throws IOException {
+		Path path = directory.resolve(GLOSS_FILE);
+		long valid = 0;
+		if (Files.exists(path)) {
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+				while (true) {
+					String gloss = in.readUTF();
+					glossIds.put(gloss, glossIds.size());
+					valid += Short.BYTES + modifiedUtf8Length(gloss);
+				}
+			} catch (EOFException e) {
+				// end of the glosses
+			}
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+				if (channel.size() > valid) {
+					channel.truncate(valid);
+				}
+			}
+		}
+		glossChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		glossOut = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(glossChannel)));
+	}
+
+	private int intern(String gloss) throws IOException {
+		Integer id = glossIds.get(gloss);
+		if (id == null) {
+			id = glossIds.size();
+			glossIds.put(gloss, id);
+			glossOut.writeUTF(gloss);
+		}
+		return id;
+	}
+
+	private Index index() {
+		openUnchecked();
+		if (index == null) {
+			try {
+				index = buildIndex();
+			} catch (IOException e) {
+				throw new UncheckedIOException("Failed to index the segments in " + directory, e);
+			}
+		}
+		return index;
+	}
+
+	private Index buildIndex() throws IOException {
+		Map<Long, Definition> byId = new HashMap<>();
+		Map<String, List<Definition>> byLanguage = new HashMap<>();
+		Map<Integer, List<Definition>> byGloss = new HashMap<>();
+		for (Segment segment : segments.values()) {
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment.path())))) {
+				readHeader(in, segment.path());
+				long position = headerLength(segment.source());
+				for (long i = 0; i < segment.count(); i++) {
+					int metaLength = in.readInt();
+					byte[] meta = in.readNBytes(metaLength);
+					int entryLength = in.readInt();
+					in.skipNBytes(entryLength);
+					long entryOffset = position + 2L * Integer.BYTES + metaLength;
+					Definition definition = readDefinition((long) segment.number() << OFFSET_BITS | position, meta, entryOffset, entryLength);
+					position = entryOffset + entryLength;
+					byId.put(definition.id(), definition);
+					byLanguage.computeIfAbsent(definition.language(), language -> new ArrayList<>()).add(definition);
+					for (int gloss : definition.glosses()) {
+						byGloss.computeIfAbsent(gloss, g -> new ArrayList<>()).add(definition);
+					}
+				}
+			}
+		}
+		log.info("Indexed {} definitions of {} languages with {} glosses", byId.size(), byLanguage.size(), byGloss.size());
+		return new Index(byId, byLanguage, byGloss);
+	}
+
+	private static Definition readDefinition(long id, byte[] meta, long entryOffset, int entryLength) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(meta));
+		String language = readNullable(in);
+		String word = in.readUTF();
+		String type = readNullable(in);
+		int[] glosses = new int[in.readInt()];
+		for (int i = 0; i < glosses.length; i++) {
+			glosses[i] = in.readInt();
+		}
+		return new Definition(id, language, word, type, glosses, entryOffset, entryLength);
+	}
+
+	/**
+	 * Distinct definitions translating the given one, optionally only those of the given language.
+	 */
+	private static Set<Definition> translations(Index index, Definition source, String langCodeTo) {
+		Set<Definition> targets = new LinkedHashSet<>();
+		for (int gloss : source.glosses()) {
+			for (Definition target : index.byGloss().getOrDefault(gloss, List.of())) {
+				if ((langCodeTo == null || langCodeTo.equals(target.language())) && source.translates(target)) {
+					targets.add(target);
+				}
+			}
+		}
+		return targets;
+	}
+
+	private byte[] readEntry(Definition definition) throws IOException {
+		FileChannel channel = channels.get(definition.segment());
+		if (channel == null) {
+			Segment segment = segments.values().stream()
+				.filter(s -> s.number() == definition.segment())
+				.findFirst()
+				.orElseThrow(() -> new IOException("No segment " + definition.segment()));
+			channel = FileChannel.open(segment.path(), StandardOpenOption.READ);
+			channels.put(segment.number(), channel);
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(definition.entryLength());
+		long position = definition.entryOffset();
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException();
+			}
+		}
+		return buffer.array();
+	}
+
+	private void delete(Segment segment) throws IOException {
+		Optional.ofNullable(channels.remove(segment.number())).ifPresent(channel -> {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				log.debug("Failed to close {}: {}", segment.path(), e.getMessage());
+			}
+		});
+		Files.deleteIfExists(segment.path());
+		segments.remove(segment.source(), segment);
+		index = null;
+	}
+
+	private void closeChannels() throws IOException {
+		for (FileChannel channel : channels.values()) {
+			channel.close();
+		}
+		channels.clear();
+	}
+
+	private static long headerLength(String source) {
+		return COUNT_OFFSET + Long.BYTES + Short.BYTES + modifiedUtf8Length(source);
+	}
+
+	/**
+	 * Length of the string as written by {@link DataOutputStream#writeUTF}.
+	 */
+	private static int modifiedUtf8Length(String value) {
+		int length = 0;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			length += c >= 0x0001 && c <= 0x007F ? 1 : c <= 0x07FF ? 2 : 3;
+		}
+		return length;
+	}
+
+	private static void writeNullable(DataOutputStream out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	private static String readNullable(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	/**
+	 * Writes a new segment of a source to a temporary file, which is renamed in place of the previous segment
+	 * of the source on commit.
+	 */
+	private class SegmentWriter implements SourceWriter {
+
+		private final int number;
+		private final String source;
+		private final Path path;
+		private final DataOutputStream out;
+		private long position;
+		private long count;
+		private boolean committed;
+
+		private SegmentWriter(int number, String source, Path path) throws IOException {
+			this.number = number;
+			this.source = source;
+			this.path = path;
+			this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+			out.writeInt(MAGIC);
+			out.writeByte(VERSION);
+			out.writeLong(0);
+			out.writeUTF(source);
+			this.position = headerLength(source);
+		}
+
+		@Override public void write(List<WordDefinitionEntity> definitions) throws IOException {
+			ByteArrayOutputStream meta = new ByteArrayOutputStream(256);
+			for (WordDefinitionEntity definition : definitions) {
+				meta.reset();
+				DataOutputStream metaOut = new DataOutputStream(meta);
+				writeNullable(metaOut, definition.getLanguage());
+				metaOut.writeUTF(definition.getWord());
+				writeNullable(metaOut, definition.getType());
+				int[] glosses = glosses(definition);
+				metaOut.writeInt(glosses.length);
+				for (int gloss : glosses) {
+					metaOut.writeInt(gloss);
+				}
+				byte[] entry = Optional.ofNullable(definition.getEntryData()).orElse(new byte[0]);
+				definition.setId((long) number << OFFSET_BITS | position);
+				out.writeInt(meta.size());
+				meta.writeTo(out);
+				out.writeInt(entry.length);
+				out.write(entry);
+				position += 2L * Integer.BYTES + meta.size() + entry.length;
+				count++;
+			}
+		}
+
+		private int[] glosses(WordDefinitionEntity definition) throws IOException {
+			synchronized (SegmentDefinitionStore.this) {
+				List<Integer> ids = new ArrayList<>();
+				for (WordDefinitionLinkEntity link : Optional.ofNullable(definition.getLinks()).orElse(List.of())) {
+					if (link.getType() == LinkType.MEANING && link.getWord() != null && link.getWord().length() <= MAX_GLOSS_LENGTH) {
+						ids.add(intern(link.getWord()));
+					}
+				}
+				return ids.stream().distinct().mapToInt(Integer::intValue).toArray();
+			}
+		}
+
+		@Override public void commit() throws IOException {
+			out.close();
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+				channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, count), COUNT_OFFSET);
+				channel.force(true);
+			}
+			synchronized (SegmentDefinitionStore.this) {
+				// the segment refers to the glosses it interned, they have to be durable before it is
+				glossOut.flush();
+				glossChannel.force(true);
+				Path committedPath = directory.resolve(SEGMENT_PREFIX + number + SEGMENT_SUFFIX);
+				Files.move(path, committedPath, StandardCopyOption.ATOMIC_MOVE);
+				Segment previous = segments.get(source);
+				if (previous != null) {
+					delete(previous);
+				}
+				segments.put(source, new Segment(number, source, count, committedPath));
+				index = null;
+				committed = true;
+			}
+			log.info("Stored {} definitions of {} in segment {}", count, source, number);
+		}
+
+		@Override public void close() throws IOException {
+			if (!committed) {
+				out.close();
+				Files.deleteIfExists(path);
+			}
+		}
+	}
+}
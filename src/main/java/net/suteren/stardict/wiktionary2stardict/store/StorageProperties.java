@@ -0,0 +1,31 @@
+package net.suteren.stardict.wiktionary2stardict.store;
+
+import java.nio.file.Path;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Selection of the storage of imported definitions.
+ */
+@Getter @Setter
+@ConfigurationProperties(prefix = "wiktionary2stardict.storage")
+public class StorageProperties {
+
+	private StorageType type = StorageType.JPA;
+
+	/** Directory of the segment files of {@link StorageType#SEGMENTS}. */
+	private Path directory = Path.of("build", "segments");
+
+	public enum StorageType {
+		/** Database through JPA, supporting incremental and resumable imports and the view command. */
+		JPA,
+		/**
+		 * Append-only segment files with an in-memory gloss index, see {@link SegmentDefinitionStore}; for one-shot
+		 * conversions without the database overhead.
+		 */
+		SEGMENTS
+	}
+}
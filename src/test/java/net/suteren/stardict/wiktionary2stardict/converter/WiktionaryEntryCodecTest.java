@@ -0,0 +1,93 @@
+package net.suteren.stardict.wiktionary2stardict.converter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import net.suteren.stardict.wiktionary2stardict.model.WiktionaryEntry;
+
+/**
+ * The export renders decoded entries instead of the parsed JSON, so both have to render the same.
+ */
+class WiktionaryEntryCodecTest {
+
+	private static final String FULL = """
+		{"word": "𐌰𐍄𐍄𐌰", "pos": "noun", "lang": "Gothic", "lang_code": "got", "etymology_number": 2,
+		 "senses": [{"id": "s1", "glosses": ["father", "😀 smile"]}, null, {"sense": "tatínek", "glosses": []}, {"glosses": null}],
+		 "sounds": [{"ipa": "/ˈat.ta/"}, {"ipa": ""}],
+		 "forms": [{"form": "𐌰𐍄𐍄𐌹𐌽", "tags": ["genitive", null]}, null, {"form": "x", "tags": []}],
+		 "etymology_texts": [],
+		 "related": [{"word": "a\\u0000b"}, {"word": "𠀀"}],
+		 "translations": [{"lang": "Czech", "lang_code": "cs", "word": "otec"}, null, {"lang": "English", "word": "father & <son>"}],
+		 "categories": ["ignored"]}
+		""";
+	private static final String MINIMAL = """
+		{"word": "pes"}
+		""";
+
+	private final ObjectMapper mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+	private WiktionaryEntry parse(String json) throws Exception {
+		return mapper.readValue(json, WiktionaryEntry.class);
+	}
+
+	@Test
+	void rendersLikeParsedJson() throws Exception {
+		for (String json : List.of(FULL, MINIMAL)) {
+			WiktionaryEntry parsed = parse(json);
+			WiktionaryEntry decoded = WiktionaryEntryCodec.decode(WiktionaryEntryCodec.encode(parsed));
+
+			assertEquals(WiktionaryEntryRenderers.toHtml(parsed), WiktionaryEntryRenderers.toHtml(decoded));
+			assertEquals(WiktionaryEntryRenderers.toXdxf(parsed), WiktionaryEntryRenderers.toXdxf(decoded));
+			assertEquals(WiktionaryEntryRenderers.toPango(parsed), WiktionaryEntryRenderers.toPango(decoded));
+		}
+	}
+
+	@Test
+	void keepsNullsEmptyListsAndSupplementaryCharacters() throws Exception {
+		WiktionaryEntry parsed = parse(FULL);
+		WiktionaryEntry decoded = WiktionaryEntryCodec.decode(WiktionaryEntryCodec.encode(parsed));
+
+		assertEquals("𐌰𐍄𐍄𐌰", decoded.getWord());
+		assertEquals(4, decoded.getSenses().size());
+		assertEquals(List.of("father", "😀 smile"), decoded.getSenses().getFirst().getGlosses());
+		assertNull(decoded.getSenses().get(1));
+		assertEquals("tatínek", decoded.getSenses().get(2).getSense());
+		assertTrue(decoded.getSenses().get(2).getGlosses().isEmpty());
+		assertNull(decoded.getSenses().get(3).getGlosses());
+		assertEquals(parsed.getForms(), decoded.getForms());
+		assertEquals(Arrays.asList("genitive", null), decoded.getForms().getFirst().getTags());
+		assertEquals(List.of(), decoded.getEtymology_texts());
+		assertNull(decoded.getDerived());
+		assertEquals(parsed.getRelated(), decoded.getRelated());
+		assertEquals("a\u0000b", decoded.getRelated().getFirst().getWord());
+		assertEquals(parsed.getTranslations(), decoded.getTranslations());
+		assertEquals(parsed.getSounds(), decoded.getSounds());
+	}
+
+	@Test
+	void decodesUnknownVersionAndMissingDataToNull() throws Exception {
+		byte[] data = WiktionaryEntryCodec.encode(parse(MINIMAL));
+		data[0] = 99;
+
+		assertNull(WiktionaryEntryCodec.decode(data));
+		assertNull(WiktionaryEntryCodec.decode(null));
+		assertNull(WiktionaryEntryCodec.decode(new byte[0]));
+	}
+
+	@Test
+	void rejectsTruncatedData() throws Exception {
+		byte[] data = WiktionaryEntryCodec.encode(parse(FULL));
+
+		assertThrows(IllegalArgumentException.class, () -> WiktionaryEntryCodec.decode(Arrays.copyOf(data, data.length - 1)));
+	}
+}
@@ -0,0 +1,152 @@
+package net.suteren.stardict.wiktionary2stardict.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Runs the download cache against a local HTTP server standing in for Kaikki.
+ */
+class DownloadCacheTest {
+
+	@TempDir
+	Path cacheDirectory;
+
+	private HttpServer server;
+	private final Map<String, Resource> resources = new ConcurrentHashMap<>();
+	private final List<String> requests = new CopyOnWriteArrayList<>();
+	private DownloadProperties properties;
+	private DownloadCache cache;
+
+	private record Resource(String body, String etag) {
+	}
+
+	@BeforeEach
+	void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", this::handle);
+		server.start();
+		properties = new DownloadProperties();
+		properties.setCacheDirectory(cacheDirectory);
+		properties.setMaxAttempts(1);
+		properties.setBackoff(Duration.ZERO);
+		cache = new DownloadCache(new KaikkiDownloadService(properties), properties);
+	}
+
+	@AfterEach
+	void tearDown() {
+		server.stop(0);
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		String path = exchange.getRequestURI().getPath();
+		String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+		requests.add(path + (ifNoneMatch != null ? " If-None-Match: " + ifNoneMatch : ""));
+		Resource resource = resources.get(path);
+		if (resource == null) {
+			exchange.sendResponseHeaders(404, -1);
+		} else if (resource.etag().equals(ifNoneMatch)) {
+			exchange.getResponseHeaders().set("ETag", resource.etag());
+			exchange.sendResponseHeaders(304, -1);
+		} else {
+			byte[] body = resource.body().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("ETag", resource.etag());
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		}
+		exchange.close();
+	}
+
+	private URI uri(String path) {
+		return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+	}
+
+	@Test
+	void revalidatesCachedDump() throws Exception {
+		resources.put("/Czech.jsonl", new Resource("{\"word\":\"pes\"}\n", "\"v1\""));
+
+		DownloadCache.CachedFile first = cache.fetch(uri("/Czech.jsonl"), "kaikki.org-dictionary-Czech.jsonl");
+		assertTrue(first.modified());
+		assertEquals("kaikki.org-dictionary-Czech.jsonl", first.file().getName());
+		assertEquals("{\"word\":\"pes\"}\n", Files.readString(first.file().toPath()));
+
+		DownloadCache.CachedFile second = cache.fetch(uri("/Czech.jsonl"), "kaikki.org-dictionary-Czech.jsonl");
+		assertFalse(second.modified());
+		assertEquals(first.file(), second.file());
+		assertEquals("/Czech.jsonl If-None-Match: \"v1\"", requests.getLast());
+
+		resources.put("/Czech.jsonl", new Resource("{\"word\":\"kočka\"}\n", "\"v2\""));
+		DownloadCache.CachedFile third = cache.fetch(uri("/Czech.jsonl"), "kaikki.org-dictionary-Czech.jsonl");
+		assertTrue(third.modified());
+		assertEquals("{\"word\":\"kočka\"}\n", Files.readString(third.file().toPath()));
+	}
+
+	@Test
+	void evictsLeastRecentlyUsedDumps() throws Exception {
+		properties.setCacheMaxSize(DataSize.ofBytes(1000));
+		String body = "x".repeat(250) + "\n";
+		resources.put("/a.jsonl", new Resource(body, "\"a\""));
+		resources.put("/b.jsonl", new Resource(body, "\"b\""));
+		resources.put("/c.jsonl", new Resource(body, "\"c\""));
+
+		DownloadCache.CachedFile a = cache.fetch(uri("/a.jsonl"), "a.jsonl");
+		cache.release(a);
+		Thread.sleep(5);
+		DownloadCache.CachedFile b = cache.fetch(uri("/b.jsonl"), "b.jsonl");
+		cache.release(b);
+		Thread.sleep(5);
+		DownloadCache.CachedFile c = cache.fetch(uri("/c.jsonl"), "c.jsonl");
+
+		assertFalse(a.file().exists());
+		assertTrue(b.file().exists());
+		assertTrue(c.file().exists());
+
+		requests.clear();
+		assertTrue(cache.fetch(uri("/a.jsonl"), "a.jsonl").modified());
+		assertEquals("/a.jsonl", requests.getFirst());
+	}
+
+	@Test
+	void keepsFetchedDumpsUntilReleased() throws Exception {
+		properties.setCacheMaxSize(DataSize.ofBytes(300));
+		String body = "x".repeat(250) + "\n";
+		resources.put("/a.jsonl", new Resource(body, "\"a\""));
+		resources.put("/b.jsonl", new Resource(body, "\"b\""));
+
+		DownloadCache.CachedFile a = cache.fetch(uri("/a.jsonl"), "a.jsonl");
+		Thread.sleep(5);
+		DownloadCache.CachedFile b = cache.fetch(uri("/b.jsonl"), "b.jsonl");
+
+		// both dumps wait for their import, so neither is evicted although the cache is over its limit
+		assertTrue(a.file().exists());
+		assertTrue(b.file().exists());
+
+		cache.release(a);
+		assertFalse(a.file().exists());
+		assertTrue(b.file().exists());
+	}
+}
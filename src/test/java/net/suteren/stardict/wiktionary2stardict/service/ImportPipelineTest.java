@@ -0,0 +1,233 @@
+package net.suteren.stardict.wiktionary2stardict.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.io.IOError;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs the pipeline on numbered lines; a failure anywhere has to end the run instead of leaving it waiting.
+ */
+class ImportPipelineTest {
+
+	private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+	private final ImportPipeline<Integer> pipeline = new ImportPipeline<>(4, 7);
+
+	@Test
+	void writesChunksInReadOrder() {
+		List<Integer> written = new ArrayList<>();
+		List<Long> offsets = new ArrayList<>();
+
+		int count = assertTimeoutPreemptively(TIMEOUT, () -> pipeline.run(lines(1000), ImportPipelineTest::parse, chunk -> {
+			written.addAll(chunk.items());
+			offsets.add(chunk.endOffset());
+		}));
+
+		List<Integer> expected = IntStream.range(0, 1000).filter(i -> i % 5 != 0).boxed().toList();
+		assertEquals(expected, written);
+		assertEquals(expected.size(), count);
+		// every chunk ends just past its seventh line, the last one past the last line
+		assertEquals(LongStream.rangeClosed(1, 143).map(chunk -> Math.min(chunk * 7, 1000) * 10).boxed().toList(), offsets);
+	}
+
+	@Test
+	void rethrowsFailureOfParser() {
+		IllegalArgumentException failure = new IllegalArgumentException("unparseable");
+
+		RuntimeException thrown = assertThrows(RuntimeException.class, () -> assertTimeoutPreemptively(TIMEOUT,
+			() -> pipeline.run(lines(1000), line -> {
+				if (line.equals("500")) {
+					throw failure;
+				}
+				return parse(line);
+			}, chunk -> {
+			})));
+
+		assertSame(failure, thrown);
+	}
+
+	@Test
+	void rethrowsErrorOfParser() {
+		Error failure = new StackOverflowError();
+
+		Error thrown = assertThrows(Error.class, () -> assertTimeoutPreemptively(TIMEOUT,
+			() -> pipeline.run(lines(1000), line -> {
+				if (line.equals("500")) {
+					throw failure;
+				}
+				return parse(line);
+			}, chunk -> {
+			})));
+
+		assertSame(failure, thrown);
+	}
+
+	@Test
+	void rethrowsErrorOfLineSource() {
+		Error failure = new IOError(new IOException("device is gone"));
+		Iterator<JsonlLine> lines = lines(1000);
+		Iterator<JsonlLine> failing = new Iterator<>() {
+
+			private int read;
+
+			@Override public boolean hasNext() {
+				return lines.hasNext();
+			}
+
+			@Override public JsonlLine next() {
+				if (++read > 100) {
+					throw failure;
+				}
+				return lines.next();
+			}
+		};
+		List<Integer> written = new ArrayList<>();
+
+		Error thrown = assertThrows(Error.class,
+			() -> assertTimeoutPreemptively(TIMEOUT, () -> pipeline.run(failing, ImportPipelineTest::parse, chunk -> written.addAll(chunk.items()))));
+
+		assertSame(failure, thrown);
+		// the chunks read before the failure are written
+		assertEquals(IntStream.range(0, 98).filter(i -> i % 5 != 0).boxed().toList(), written);
+	}
+
+	@Test
+	void stopsReadingWhenWriterFails() {
+		IllegalStateException failure = new IllegalStateException("database is gone");
+		Iterator<JsonlLine> endless = new Iterator<>() {
+
+			private long read;
+
+			@Override public boolean hasNext() {
+				return true;
+			}
+
+			@Override public JsonlLine next() {
+				read++;
+				return new JsonlLine(Long.toString(read), read * 10);
+			}
+		};
+
+		RuntimeException thrown = assertThrows(RuntimeException.class, () -> assertTimeoutPreemptively(TIMEOUT,
+			() -> pipeline.run(endless, ImportPipelineTest::parse, chunk -> {
+				throw failure;
+			})));
+
+		assertSame(failure, thrown);
+	}
+
+	@Test
+	void writesChunksOfEveryPartInOrder() {
+		List<Iterator<JsonlLine>> parts = IntStream.range(0, 6).mapToObj(part -> lines(part * 100, 100 + part * 10)).toList();
+		Map<Integer, List<Integer>> written = new HashMap<>();
+		Map<Integer, List<Long>> offsets = new HashMap<>();
+
+		int count = assertTimeoutPreemptively(TIMEOUT, () -> pipeline.runParts(parts, ImportPipelineTest::parse, JsonlLine::endOffset,
+			(part, chunk) -> {
+				written.computeIfAbsent(part, p -> new ArrayList<>()).addAll(chunk.items());
+				offsets.computeIfAbsent(part, p -> new ArrayList<>()).add(chunk.endOffset());
+			}));
+
+		assertEquals(6, written.size());
+		for (int part = 0; part < 6; part++) {
+			assertEquals(IntStream.range(part * 100, part * 110 + 100).filter(i -> i % 5 != 0).boxed().toList(), written.get(part));
+			assertEquals(offsets.get(part).stream().sorted().toList(), offsets.get(part));
+			assertEquals((part * 110 + 100) * 10L, offsets.get(part).getLast());
+		}
+		assertEquals(written.values().stream().mapToInt(List::size).sum(), count);
+	}
+
+	@Test
+	void rethrowsErrorOfPartParser() {
+		Error failure = new StackOverflowError();
+		List<Iterator<JsonlLine>> parts = IntStream.range(0, 6).mapToObj(part -> lines(part * 100, 100)).toList();
+
+		Error thrown = assertThrows(Error.class, () -> assertTimeoutPreemptively(TIMEOUT,
+			() -> pipeline.runParts(parts, line -> {
+				if (line.text().equals("250")) {
+					throw failure;
+				}
+				return parse(line.text());
+			}, JsonlLine::endOffset, (part, chunk) -> {
+			})));
+
+		assertSame(failure, thrown);
+	}
+
+	@Test
+	void rethrowsErrorOfPartLineSource() {
+		Error failure = new IOError(new IOException("device is gone"));
+		Iterator<JsonlLine> failing = new Iterator<>() {
+
+			@Override public boolean hasNext() {
+				return true;
+			}
+
+			@Override public JsonlLine next() {
+				throw failure;
+			}
+		};
+		List<Iterator<JsonlLine>> parts = List.of(lines(0, 100), failing, lines(200, 100));
+
+		Error thrown = assertThrows(Error.class, () -> assertTimeoutPreemptively(TIMEOUT,
+			() -> pipeline.runParts(parts, line -> parse(line.text()), JsonlLine::endOffset, (part, chunk) -> {
+			})));
+
+		assertSame(failure, thrown);
+	}
+
+	@Test
+	void stopsPartsWhenWriterFails() {
+		IllegalStateException failure = new IllegalStateException("database is gone");
+		List<Iterator<JsonlLine>> parts = IntStream.range(0, 6).mapToObj(part -> lines(part * 100_000, 100_000)).toList();
+
+		RuntimeException thrown = assertThrows(RuntimeException.class, () -> assertTimeoutPreemptively(TIMEOUT,
+			() -> pipeline.runParts(parts, line -> parse(line.text()), JsonlLine::endOffset, (part, chunk) -> {
+				throw failure;
+			})));
+
+		assertSame(failure, thrown);
+	}
+
+	/**
+	 * Lines with numbers {@code 0} to {@code count - 1}, each ten bytes long.
+	 */
+	static Iterator<JsonlLine> lines(int count) {
+		return lines(0, count);
+	}
+
+	/**
+	 * Lines with numbers {@code first} to {@code first + count - 1}, each ten bytes long.
+	 */
+	static Iterator<JsonlLine> lines(int first, int count) {
+		return IntStream.range(first, first + count)
+			.mapToObj(i -> new JsonlLine(Integer.toString(i), (i + 1) * 10L))
+			.iterator();
+	}
+
+	/**
+	 * Skips multiples of five and takes longer on some lines, so later chunks may be parsed first.
+	 */
+	static Integer parse(String line) {
+		int value = Integer.parseInt(line);
+		if (value % 13 == 0) {
+			LockSupport.parkNanos(Duration.ofMillis(1).toNanos());
+		}
+		return value % 5 == 0 ? null : value;
+	}
+}
@@ -0,0 +1,88 @@
+package net.suteren.stardict.wiktionary2stardict.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.FileInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.LanguageCombinationEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.TranslationRowEntity;
+import net.suteren.stardict.wiktionary2stardict.model.WiktionaryEntry;
+import net.suteren.stardict.wiktionary2stardict.stardict.domain.IdxEntry;
+import net.suteren.stardict.wiktionary2stardict.stardict.io.IdxFileReader;
+import net.suteren.stardict.wiktionary2stardict.store.DefinitionStore;
+
+/**
+ * Exports more definitions than the render cache holds, translating to evicted definitions as well as to new ones.
+ */
+class StardictExportServiceTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void writesEveryTranslationPastTheRenderCache() throws Exception {
+		int cached = StardictExportService.RENDERED_CACHE_SIZE;
+		// once the cache is full, every block translates half to the least recently used definitions, which
+		// the other half, rendered in the same block, pushes out of the cache
+		List<TranslationRowEntity> rows = IntStream.range(0, cached + 4 * StardictExportService.BLOCK_SIZE)
+			.mapToObj(i -> {
+				long definitionId = i >= cached && i % 2 == 0 ? i - cached : i;
+				return new TranslationRowEntity("w%06d".formatted(i), definitionId, "d%06d".formatted(definitionId));
+			})
+			.toList();
+
+		new StardictExportService(new RowStore(rows)).export(directory.resolve("test-").toString(), null, "en", "cs", List.of('m'));
+
+		List<IdxEntry> index;
+		try (IdxFileReader reader = new IdxFileReader(new FileInputStream(directory.resolve("test-en-cs.idx").toFile()), Integer.SIZE)) {
+			index = reader.readIdxFile();
+		}
+		byte[] dict = Files.readAllBytes(directory.resolve("test-en-cs.dict"));
+		assertEquals(rows.stream().map(TranslationRowEntity::word).toList(), index.stream().map(IdxEntry::word).toList());
+		for (int i = 0; i < rows.size(); i++) {
+			String definition = new String(dict, Math.toIntExact(index.get(i).offset()), index.get(i).size(), StandardCharsets.UTF_8);
+			assertTrue(definition.contains(rows.get(i).definitionWord()), rows.get(i).word());
+		}
+	}
+
+	/**
+	 * Store of the given translations, which finds an entry for every definition.
+	 */
+	private record RowStore(List<TranslationRowEntity> rows) implements DefinitionStore {
+
+		@Override public List<LanguageCombinationEntity> findLanguageCombinations(String langCodeFrom, String langCodeTo) {
+			return List.of(new LanguageCombinationEntity(langCodeFrom, langCodeTo));
+		}
+
+		@Override public Stream<TranslationRowEntity> streamTranslations(String langCodeFrom, String langCodeTo) {
+			return rows.stream();
+		}
+
+		@Override public Map<Long, WiktionaryEntry> findEntries(Collection<Long> ids) {
+			Map<Long, WiktionaryEntry> entries = new HashMap<>();
+			for (Long id : ids) {
+				WiktionaryEntry entry = new WiktionaryEntry();
+				entry.setWord("d%06d".formatted(id));
+				entries.put(id, entry);
+			}
+			return entries;
+		}
+
+		@Override public long deleteSources(Collection<String> sources) {
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package net.suteren.stardict.wiktionary2stardict.sink;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.WordDefinitionEntity;
+import net.suteren.stardict.wiktionary2stardict.service.ImportProperties;
+
+/**
+ * Partitions the tables Hibernate creates for definitions, links, translation pairs and word trigrams on PostgreSQL
+ * and drops the partitions of removed sources.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class LanguagePartitionsTest {
+
+	@Container
+	static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+	private JdbcTemplate jdbcTemplate;
+	private LanguagePartitions partitions;
+
+	@BeforeEach
+	void createTables() {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("drop schema public cascade");
+		jdbcTemplate.execute("create schema public");
+		// the tables as ddl-auto creates them, with the columns the indexes need
+		jdbcTemplate.execute("""
+			create table definition (id bigint not null primary key, source varchar(255), language varchar(255), word varchar(255),
+			normalized_word varchar(255), type varchar(255), entry_key varchar(64))
+			""");
+		jdbcTemplate.execute("""
+			create table link (id bigint not null primary key, gloss_id bigint, language varchar(255), type smallint,
+			word_definition_id bigint not null constraint fk_link_word_definition references definition)
+			""");
+		jdbcTemplate.execute("""
+			create table translation_pair (from_lang varchar(255), to_lang varchar(255), pos varchar(255),
+			source_id bigint not null constraint fk_translation_pair_source references definition on delete cascade,
+			target_id bigint not null constraint fk_translation_pair_target references definition on delete cascade,
+			primary key (source_id, target_id))
+			""");
+		jdbcTemplate.execute("""
+			create table word_trigram (language varchar(255) not null, trigram varchar(16) not null,
+			definition_id bigint not null constraint fk_word_trigram_definition references definition on delete cascade,
+			primary key (language, trigram, definition_id))
+			""");
+		definition(1, "English", "en", "dog");
+		definition(2, "English", "en", "cat");
+		definition(3, "Czech", "cs", "pes");
+		definition(4, "German", "de", "Hund");
+		definition(5, "Other", "de", "Katze");
+		definition(6, "English", null, "?");
+		pair(1, 3, "en", "cs");
+		pair(3, 1, "cs", "en");
+		pair(1, 4, "en", "de");
+		jdbcTemplate.update("insert into word_trigram values ('en', 'dog', 1), ('cs', 'pes', 3), ('de', 'hun', 4)");
+
+		ImportProperties importProperties = new ImportProperties();
+		importProperties.setPartitionByLanguage(true);
+		partitions = new LanguagePartitions(importProperties, jdbcTemplate, new DataSourceTransactionManager(dataSource));
+	}
+
+	@Test
+	void convertsPlainTablesKeepingRowsAndKeys() {
+		partitions.partition();
+
+		assertEquals(List.of("definition_default", "definition_lang_cs", "definition_lang_de", "definition_lang_en"), partitionsOf("definition"));
+		assertEquals(List.of("link_default", "link_lang_cs", "link_lang_de", "link_lang_en"), partitionsOf("link"));
+		assertEquals(6, count("select count(*) from definition"));
+		assertEquals(2, count("select count(*) from definition_lang_en"));
+		assertEquals(1, count("select count(*) from definition_default"));
+		assertEquals(6, count("select count(*) from link"));
+		assertEquals(1, count("select count(*) from link_default"));
+		assertEquals(List.of("fk_link_word_definition", "fk_translation_pair_source", "fk_translation_pair_target", "fk_word_trigram_definition"),
+			jdbcTemplate.queryForList("""
+				select distinct conname from pg_constraint where contype = 'f' and conparentid = 0 and cardinality(conkey) = 2 order by conname
+				""", String.class));
+
+		// a second start finds the tables partitioned already
+		partitions.partition();
+		assertEquals(6, count("select count(*) from definition"));
+
+		WordDefinitionEntity french = new WordDefinitionEntity();
+		french.setLanguage("fr");
+		partitions.ensurePartitions(List.of(french));
+		assertTrue(partitionsOf("definition").contains("definition_lang_fr"));
+		assertTrue(partitionsOf("link").contains("link_lang_fr"));
+
+		// the recreated foreign keys keep their cascades
+		jdbcTemplate.update("delete from link where word_definition_id = 1");
+		jdbcTemplate.update("delete from definition where id = 1");
+		assertEquals(0, count("select count(*) from translation_pair"));
+		assertEquals(2, count("select count(*) from word_trigram"));
+	}
+
+	@Test
+	void dropsPartitionsOwnedBySource() {
+		partitions.partition();
+
+		assertEquals(1, partitions.dropPartitionsOf("Czech"));
+		assertEquals(0, count("select count(*) from definition where language = 'cs'"));
+		assertEquals(0, count("select count(*) from link where language = 'cs'"));
+		assertEquals(1, count("select count(*) from translation_pair"));
+		assertEquals(2, count("select count(*) from word_trigram"));
+		// the partitions are created again for the next import of the language
+		assertTrue(partitionsOf("definition").contains("definition_lang_cs"));
+		assertTrue(partitionsOf("link").contains("link_lang_cs"));
+
+		// shared with another source, left to be deleted row by row
+		assertEquals(0, partitions.dropPartitionsOf("German"));
+		assertEquals(2, count("select count(*) from definition where language = 'de'"));
+
+		// the entry without a language is in the default partition, left to be deleted row by row
+		assertEquals(2, partitions.dropPartitionsOf("English"));
+		assertEquals(List.of(4L, 5L, 6L), jdbcTemplate.queryForList("select id from definition order by id", Long.class));
+		assertEquals(0, count("select count(*) from translation_pair"));
+		assertEquals(1, count("select count(*) from word_trigram"));
+	}
+
+	private void definition(long id, String source, String language, String word) {
+		jdbcTemplate.update("insert into definition (id, source, language, word, normalized_word, type) values (?, ?, ?, ?, lower(?), 'noun')",
+			id, source, language, word, word);
+		jdbcTemplate.update("insert into link (id, gloss_id, language, type, word_definition_id) values (?, ?, ?, 0, ?)", id, id, language, id);
+	}
+
+	private void pair(long source, long target, String fromLang, String toLang) {
+		jdbcTemplate.update("insert into translation_pair (from_lang, to_lang, pos, source_id, target_id) values (?, ?, 'noun', ?, ?)",
+			fromLang, toLang, source, target);
+	}
+
+	private List<String> partitionsOf(String table) {
+		return jdbcTemplate.queryForList("""
+			select c.relname from pg_inherits i join pg_class c on c.oid = i.inhrelid where i.inhparent = to_regclass(?) order by c.relname
+			""", String.class, table);
+	}
+
+	private long count(String sql) {
+		return jdbcTemplate.queryForObject(sql, Long.class);
+	}
+}
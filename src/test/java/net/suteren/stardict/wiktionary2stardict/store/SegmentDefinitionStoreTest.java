@@ -0,0 +1,168 @@
+package net.suteren.stardict.wiktionary2stardict.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.suteren.stardict.wiktionary2stardict.converter.WiktionaryEntryCodec;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.LanguageCombinationEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.LinkType;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.TranslationRowEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.WordDefinitionEntity;
+import net.suteren.stardict.wiktionary2stardict.jpa.entity.WordDefinitionLinkEntity;
+import net.suteren.stardict.wiktionary2stardict.model.WiktionaryEntry;
+
+/**
+ * Imports, re-imports and deletes sources of a segment store and reopens it as a new process would.
+ */
+class SegmentDefinitionStoreTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void importsReplacesAndDeletesSources() throws Exception {
+		List<WordDefinitionEntity> english;
+		try (SegmentDefinitionStore store = new SegmentDefinitionStore(directory)) {
+			english = importSource(store, "English",
+				definition("en", "dog", "noun", "dog", "hound"),
+				definition("en", "cat", "noun", "cat"),
+				definition("en", "Rex", "name", "dog"));
+			importSource(store, "Czech",
+				definition("cs", "pes", "noun", "dog"),
+				definition("cs", "kočka", "noun", "cat"),
+				definition("cs", "psát", "verb", "dog"));
+
+			assertEquals(List.of("cat -> kočka", "dog -> pes"), translations(store, "en", "cs"));
+			assertEquals(List.of("kočka -> cat", "pes -> dog"), translations(store, "cs", "en"));
+			assertEquals(List.of(new LanguageCombinationEntity("cs", "en")), store.findLanguageCombinations("cs", null));
+			assertEquals(2, store.findLanguageCombinations(null, null).size());
+
+			List<Long> ids = english.stream().map(WordDefinitionEntity::getId).toList();
+			Map<Long, WiktionaryEntry> entries = store.findEntries(ids);
+			assertEquals(3, entries.size());
+			for (WordDefinitionEntity definition : english) {
+				assertEquals(definition.getWord(), entries.get(definition.getId()).getWord());
+				// the upper bits of an id are the number of the segment holding it
+				assertTrue(Files.isRegularFile(directory.resolve("segment-" + (definition.getId() >>> 40) + ".seg")));
+			}
+		}
+
+		// a crash between committing a segment and deleting the one it replaces leaves both behind,
+		// an interrupted import leaves its temporary file
+		byte[] replaced = Files.readAllBytes(directory.resolve("segment-1.seg"));
+		try (SegmentDefinitionStore store = new SegmentDefinitionStore(directory)) {
+			importSource(store, "Czech", definition("cs", "pes", "noun", "dog"));
+			assertFalse(Files.exists(directory.resolve("segment-1.seg")));
+		}
+		Files.write(directory.resolve("segment-1.seg"), replaced);
+		Files.writeString(directory.resolve("segment-7.seg.tmp"), "interrupted");
+
+		try (SegmentDefinitionStore store = new SegmentDefinitionStore(directory)) {
+			assertEquals(List.of("dog -> pes"), translations(store, "en", "cs"));
+			assertEquals(List.of("segment-0.seg", "segment-2.seg"), segmentFiles());
+			assertEquals("dog", store.findEntries(List.of(english.getFirst().getId())).get(english.getFirst().getId()).getWord());
+			assertTrue(store.containsSource("Czech"));
+
+			assertEquals(1, store.deleteSources(List.of("Czech")));
+			assertFalse(store.containsSource("Czech"));
+			assertEquals(List.of(), translations(store, "en", "cs"));
+			assertEquals(List.of(), store.findLanguageCombinations(null, null));
+
+			assertEquals(3, store.deleteSources(List.of()));
+			assertFalse(store.containsSource("English"));
+			assertEquals(List.of(), segmentFiles());
+		}
+	}
+
+	@Test
+	void discardsUncommittedSources() throws Exception {
+		try (SegmentDefinitionStore store = new SegmentDefinitionStore(directory)) {
+			importSource(store, "English", definition("en", "dog", "noun", "dog"));
+			try (EmbeddedDefinitionStore.SourceWriter writer = store.openSource("Czech")) {
+				writer.write(List.of(definition("cs", "pes", "noun", "dog")));
+			}
+			assertFalse(store.containsSource("Czech"));
+			assertEquals(List.of(), translations(store, "en", "cs"));
+			assertEquals(List.of("segment-0.seg"), segmentFiles());
+		}
+	}
+
+	@Test
+	void keepsGlossesWithSupplementaryCharactersAndNulAcrossReopening() throws Exception {
+		try (SegmentDefinitionStore store = new SegmentDefinitionStore(directory)) {
+			importSource(store, "Gothic", definition("got", "𐌰𐍄𐍄𐌰", "noun", "father 😀", "a\u0000b", "𠀀", "plain"));
+		}
+		long glossesSize = Files.size(directory.resolve("glosses.dat"));
+
+		try (SegmentDefinitionStore store = new SegmentDefinitionStore(directory)) {
+			importSource(store, "Czech", definition("cs", "otec", "noun", "plain"));
+			importSource(store, "English", definition("en", "father", "noun", "father 😀"));
+
+			assertEquals(List.of("𐌰𐍄𐍄𐌰 -> otec"), translations(store, "got", "cs"));
+			assertEquals(List.of("𐌰𐍄𐍄𐌰 -> father"), translations(store, "got", "en"));
+		}
+		// no gloss was interned again, nor any cut off
+		assertEquals(glossesSize, Files.size(directory.resolve("glosses.dat")));
+
+		try (SegmentDefinitionStore store = new SegmentDefinitionStore(directory)) {
+			// a new gloss gets a new id instead of one of a lost gloss
+			importSource(store, "French", definition("fr", "nouveau", "noun", "new"));
+			assertEquals(List.of(), translations(store, "got", "fr"));
+			assertEquals(List.of("𐌰𐍄𐍄𐌰 -> otec"), translations(store, "got", "cs"));
+		}
+	}
+
+	private static List<WordDefinitionEntity> importSource(SegmentDefinitionStore store, String source, WordDefinitionEntity... definitions)
+		throws IOException {
+		try (EmbeddedDefinitionStore.SourceWriter writer = store.openSource(source)) {
+			// a chunk per definition, so the offsets are carried over from chunk to chunk
+			for (WordDefinitionEntity definition : definitions) {
+				writer.write(List.of(definition));
+			}
+			writer.commit();
+		}
+		return List.of(definitions);
+	}
+
+	private static WordDefinitionEntity definition(String language, String word, String type, String... glosses) {
+		WordDefinitionEntity definition = new WordDefinitionEntity();
+		definition.setLanguage(language);
+		definition.setWord(word);
+		definition.setType(type);
+		definition.setLinks(Stream.of(glosses)
+			.map(gloss -> new WordDefinitionLinkEntity(gloss, language, LinkType.MEANING))
+			.toList());
+		WiktionaryEntry entry = new WiktionaryEntry();
+		entry.setWord(word);
+		entry.setPos(type);
+		entry.setLang_code(language);
+		definition.setEntryData(WiktionaryEntryCodec.encode(entry));
+		return definition;
+	}
+
+	private static List<String> translations(DefinitionStore store, String from, String to) {
+		try (Stream<TranslationRowEntity> rows = store.streamTranslations(from, to)) {
+			return rows.map(row -> row.word() + " -> " + row.definitionWord()).toList();
+		}
+	}
+
+	private List<String> segmentFiles() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.map(file -> file.getFileName().toString())
+				.filter(name -> name.startsWith("segment-"))
+				.sorted()
+				.toList();
+		}
+	}
+}